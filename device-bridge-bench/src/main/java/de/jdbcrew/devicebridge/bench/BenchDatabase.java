@@ -0,0 +1,71 @@
+package de.jdbcrew.devicebridge.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import de.jdbcrew.devicebridge.config.MultiDataSourceConfig;
+import de.jdbcrew.devicebridge.service.BridgeMetrics;
+import de.jdbcrew.devicebridge.service.DbService;
+import de.jdbcrew.devicebridge.service.IdCache;
+import de.jdbcrew.devicebridge.service.TelemetryStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SQLite target in a fresh temp directory, wired like the application does it: pools and schema from
+ * {@link MultiDataSourceConfig} (WAL, single writer, read-only pool), a {@link DbService} on top. No Spring
+ * context, so nothing but the measured path runs in the forked JVM.
+ */
+final class BenchDatabase implements AutoCloseable {
+
+    static final String KEY = "bench";
+
+    final DbService dbService;
+    final JdbcTemplate jdbc;
+    private final Path dir;
+    private final List<JdbcTemplate> pools = new ArrayList<>();
+
+    BenchDatabase() throws IOException {
+        dir = Files.createTempDirectory("device-bridge-bench");
+        MultiDataSourceConfig.DbProps props = new MultiDataSourceConfig.DbProps();
+        props.setUrl("jdbc:sqlite:" + dir.resolve("bench.db"));
+        props.setDriverClassName("org.sqlite.JDBC");
+        Map<String, MultiDataSourceConfig.DbProps> targets = Map.of(KEY, props);
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        MultiDataSourceConfig config = new MultiDataSourceConfig();
+        Map<String, JdbcTemplate> templates = config.jdbcTemplates(targets, registry);
+        if (!templates.containsKey(KEY)) throw new IllegalStateException("SQLite target could not be created in " + dir);
+        MultiDataSourceConfig.ReadOnlyTemplates readOnly = config.readOnlyTemplates(targets, templates, registry);
+        pools.addAll(templates.values());
+        pools.addAll(readOnly.byKey().values());
+
+        jdbc = templates.get(KEY);
+        // no live subscribers: publishing after each import is a map lookup, as in production without dashboards
+        dbService = new DbService(templates, readOnly, new IdCache(10_000), new BridgeMetrics(registry),
+                new TelemetryStream(1, 1), Duration.ofMinutes(5));
+    }
+
+    /** Empties the data tables so every iteration inserts into the same state. */
+    void truncate() {
+        for (String table : List.of("measurements", "measurement_rollup", "telemetry", "telemetry_rollup")) {
+            jdbc.update("DELETE FROM " + table);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (JdbcTemplate jt : pools) {
+            if (jt.getDataSource() instanceof HikariDataSource ds) ds.close();
+        }
+        FileSystemUtils.deleteRecursively(dir);
+    }
+}
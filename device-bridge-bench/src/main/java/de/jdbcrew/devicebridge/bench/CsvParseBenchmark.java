@@ -0,0 +1,91 @@
+package de.jdbcrew.devicebridge.bench;
+
+import de.jdbcrew.devicebridge.service.CsvTokenizer;
+import de.jdbcrew.devicebridge.service.TelemetryBatch;
+import de.jdbcrew.devicebridge.service.BridgeMetrics;
+import de.jdbcrew.devicebridge.service.TelemetryCsvPipeline;
+import de.jdbcrew.devicebridge.service.TelemetryCsvReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload parsing without the database: {@code tokenize} only splits lines into fields, {@code readChunks} is the
+ * full path of {@code /upload} (field splitting, timestamp and double parsing into a reused {@link TelemetryBatch}).
+ * The difference of the two is the cost of number parsing. {@code pipeline} runs the parallel path of large
+ * uploads ({@link TelemetryCsvPipeline} on all cores) with an insert stage that only consumes the chunks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CsvParseBenchmark {
+
+    @Param({"10000", "100000"})
+    int rows;
+
+    @Param({"500", "5000"})
+    int chunkRows;
+
+    private byte[] csv;
+    private TelemetryBatch batch;
+    private TelemetryCsvPipeline pipeline;
+
+    @Setup
+    public void setUp() {
+        csv = SyntheticTelemetry.csv(rows, SyntheticTelemetry.SEED);
+        batch = new TelemetryBatch(chunkRows);
+        // fork-join workers are daemon threads, nothing to shut down
+        pipeline = new TelemetryCsvPipeline(new BridgeMetrics(new SimpleMeterRegistry()), 0, DataSize.ofBytes(0), 0);
+    }
+
+    @Benchmark
+    public int tokenize(Blackhole bh) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new InputStreamReader(new ByteArrayInputStream(csv), StandardCharsets.UTF_8));
+        int lines = 0;
+        while (tokenizer.nextLine()) {
+            bh.consume(tokenizer.fieldCount());
+            lines++;
+        }
+        return lines;
+    }
+
+    @Benchmark
+    public long readChunks(Blackhole bh) throws IOException {
+        long total = 0;
+        try (TelemetryCsvReader reader = new TelemetryCsvReader(new ByteArrayInputStream(csv))) {
+            int n;
+            while ((n = reader.readChunk(batch, chunkRows)) > 0) {
+                bh.consume(batch);
+                batch.clear();
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long pipeline(Blackhole bh) throws IOException {
+        return pipeline.parse("bench", new ByteArrayInputStream(csv), csv.length, chunkRows,
+                (chunk, bytes) -> bh.consume(chunk)).lines();
+    }
+}
@@ -0,0 +1,69 @@
+package de.jdbcrew.devicebridge.bench;
+
+import de.jdbcrew.devicebridge.service.DbService;
+import de.jdbcrew.devicebridge.service.TelemetryBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One import transaction per operation into a temp-file SQLite database, including the writer thread hand-off
+ * and the rollup upsert. The time per operation divided by {@code batchRows} gives the cost per row; the tables
+ * are emptied before every iteration so each one starts from the same file state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ImportBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    int batchRows;
+
+    private BenchDatabase db;
+    private TelemetryBatch telemetry;
+    private List<DbService.SensorMeasurement> measurements;
+
+    @Setup
+    public void setUp() throws IOException {
+        db = new BenchDatabase();
+        telemetry = SyntheticTelemetry.batch(batchRows, SyntheticTelemetry.SEED);
+        measurements = SyntheticTelemetry.measurements(batchRows, SyntheticTelemetry.SEED);
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTables() {
+        db.truncate();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        db.close();
+    }
+
+    @Benchmark
+    public int importTelemetry() {
+        return db.dbService.importTelemetry(BenchDatabase.KEY, telemetry);
+    }
+
+    @Benchmark
+    public int importMeasurements() {
+        return db.dbService.importMeasurements(BenchDatabase.KEY, measurements);
+    }
+}
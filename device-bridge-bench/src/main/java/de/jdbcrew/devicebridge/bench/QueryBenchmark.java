@@ -0,0 +1,79 @@
+package de.jdbcrew.devicebridge.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jdbcrew.devicebridge.service.DbService;
+import de.jdbcrew.devicebridge.service.TelemetryBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths over a telemetry table of {@value #TABLE_ROWS} rows: a {@code /data} page read and its JSON
+ * rendering (timestamp formatting per row), and the streaming CSV export of the whole table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QueryBenchmark {
+
+    static final int TABLE_ROWS = 200_000;
+    private static final int LOAD_ROWS = 5_000;
+
+    @Param({"200", "10000"})
+    int pageRows;
+
+    private BenchDatabase db;
+    private DbService.TelemetryQuery query;
+    private DbService.TelemetryPage page;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() throws IOException {
+        db = new BenchDatabase();
+        TelemetryBatch batch = SyntheticTelemetry.batch(LOAD_ROWS, SyntheticTelemetry.SEED);
+        for (int loaded = 0; loaded < TABLE_ROWS; loaded += LOAD_ROWS) {
+            db.dbService.importTelemetry(BenchDatabase.KEY, batch);
+        }
+        db.jdbc.execute("ANALYZE");
+        query = new DbService.TelemetryQuery(null, null, List.of(), List.of(), false, null, pageRows);
+        page = db.dbService.telemetryPage(BenchDatabase.KEY, query);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        db.close();
+    }
+
+    @Benchmark
+    public DbService.TelemetryPage readPage() {
+        return db.dbService.telemetryPage(BenchDatabase.KEY, query);
+    }
+
+    @Benchmark
+    public void renderPage() throws IOException {
+        mapper.writeValue(OutputStream.nullOutputStream(), page.rows());
+    }
+
+    @Benchmark
+    public long exportCsv() {
+        return db.dbService.exportCsv(BenchDatabase.KEY, "telemetry", null, null, Writer.nullWriter());
+    }
+}
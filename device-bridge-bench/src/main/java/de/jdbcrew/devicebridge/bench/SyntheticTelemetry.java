@@ -0,0 +1,82 @@
+package de.jdbcrew.devicebridge.bench;
+
+import de.jdbcrew.devicebridge.service.DbService;
+import de.jdbcrew.devicebridge.service.TelemetryBatch;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded test data in the upload formats: the same seed always gives the same bytes and rows, so runs on
+ * different commits measure identical input. One row per second from {@link #START_MILLIS}; about one value
+ * in ten is empty (NULL), like a Pi that skips a sensor now and then.
+ */
+final class SyntheticTelemetry {
+
+    static final long SEED = 20240501L;
+    static final long START_MILLIS = Instant.parse("2024-05-01T00:00:00Z").toEpochMilli();
+
+    private static final String[] DEVICES = {"pi-1", "pi-2", "pi-3", "pi-4"};
+    private static final String[] METRICS = {"temp_c", "press_hpa", "hum_perc"};
+
+    private SyntheticTelemetry() {
+    }
+
+    /** Upload CSV: {@code timestamp} plus the 18 metric columns, ISO-8601 timestamps. */
+    static byte[] csv(int rows, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(rows * 160);
+        sb.append("timestamp,").append(String.join(",", TelemetryBatch.COLUMNS)).append('\n');
+        for (int r = 0; r < rows; r++) {
+            sb.append(Instant.ofEpochMilli(START_MILLIS + r * 1000L));
+            for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+                sb.append(',');
+                if (random.nextInt(10) != 0) sb.append(value(random, c));
+            }
+            sb.append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static TelemetryBatch batch(int rows, long seed) {
+        Random random = new Random(seed);
+        TelemetryBatch batch = new TelemetryBatch(rows);
+        for (int r = 0; r < rows; r++) {
+            int row = batch.addRow(START_MILLIS + r * 1000L);
+            for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+                if (random.nextInt(10) != 0) batch.set(row, c, value(random, c));
+            }
+        }
+        return batch;
+    }
+
+    /** Numeric measurements of 4 devices with one sensor each, spread over 3 metrics. */
+    static List<DbService.SensorMeasurement> measurements(int rows, long seed) {
+        Random random = new Random(seed);
+        List<DbService.SensorMeasurement> out = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            String metric = METRICS[r % METRICS.length];
+            out.add(new DbService.SensorMeasurement(DEVICES[random.nextInt(DEVICES.length)], "env", "",
+                    new Timestamp(START_MILLIS + r * 1000L), null, metric, value(random, 6 + r % METRICS.length),
+                    null, null, null, null));
+        }
+        return out;
+    }
+
+    // plausible magnitudes per column, two decimals like the Pi writes them
+    private static double value(Random random, int column) {
+        double v = switch (column) {
+            case 0, 1 -> random.nextDouble() * 180;            // servos, degrees
+            case 2, 3, 4, 5 -> random.nextDouble() * 100;      // LEDs, percent
+            case 6 -> 15 + random.nextGaussian() * 5;          // temp_c
+            case 7 -> 1013 + random.nextGaussian() * 10;       // press_hpa
+            case 8 -> 30 + random.nextDouble() * 50;           // hum_perc
+            default -> random.nextGaussian() * 2;              // mag/accel/gyro
+        };
+        return Math.round(v * 100) / 100.0;
+    }
+}
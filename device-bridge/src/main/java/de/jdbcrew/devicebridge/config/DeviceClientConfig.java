@@ -0,0 +1,28 @@
+package de.jdbcrew.devicebridge.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.ClientHttpRequestFactories;
+import org.springframework.boot.web.client.ClientHttpRequestFactorySettings;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Connect and read timeouts for the device HTTP calls. Every {@code RestClient.Builder} handed to the
+ * DeviceService implementations passes through this customizer, so a device that accepts the connection but
+ * never answers ties up a thread for at most {@code devices.connect-timeout + devices.read-timeout}.
+ */
+@Configuration
+public class DeviceClientConfig {
+
+    @Bean
+    public RestClientCustomizer deviceTimeouts(@Value("${devices.connect-timeout:2s}") Duration connectTimeout,
+                                               @Value("${devices.read-timeout:5s}") Duration readTimeout) {
+        ClientHttpRequestFactorySettings settings = ClientHttpRequestFactorySettings.DEFAULTS
+                .withConnectTimeout(connectTimeout)
+                .withReadTimeout(readTimeout);
+        return builder -> builder.requestFactory(ClientHttpRequestFactories.get(settings));
+    }
+}
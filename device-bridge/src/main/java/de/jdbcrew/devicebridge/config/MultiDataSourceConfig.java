@@ -4,6 +4,9 @@ package de.jdbcrew.devicebridge.config;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import de.jdbcrew.devicebridge.service.SqlDialect;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -17,7 +20,9 @@ import org.springframework.jdbc.datasource.init.ScriptUtils;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 @Configuration
@@ -31,31 +36,21 @@ public class MultiDataSourceConfig {
     }
 
     @Bean
-    public Map<String, JdbcTemplate> jdbcTemplates(Map<String, DbProps> dbTargets) {
+    public Map<String, JdbcTemplate> jdbcTemplates(Map<String, DbProps> dbTargets, MeterRegistry meterRegistry) {
         Map<String, JdbcTemplate> map = new HashMap<>();
         for (var e : dbTargets.entrySet()) {
             String key = e.getKey().toLowerCase();
             DbProps p = e.getValue();
 
-            HikariConfig cfg = new HikariConfig();
-            cfg.setPoolName("db-" + key);
-            cfg.setJdbcUrl(p.getUrl());
-            if (p.getDriverClassName() != null && !p.getDriverClassName().isBlank()) {
-                cfg.setDriverClassName(p.getDriverClassName());
-            }
-            if (p.getUsername() != null) cfg.setUsername(p.getUsername());
-            if (p.getPassword() != null) cfg.setPassword(p.getPassword());
-            cfg.setMaximumPoolSize(10);
-            cfg.setMinimumIdle(0);
-            // Start even if the DB is temporarily unreachable; acquire lazily
-            cfg.setInitializationFailTimeout(-1);
+            HikariConfig cfg = baseConfig("db-" + key, p, meterRegistry);
+            applyPoolSettings(cfg, p, isSqlite(p));
             try {
                 DataSource ds = new HikariDataSource(cfg);
                 JdbcTemplate jt = new JdbcTemplate(ds);
                 map.put(key, jt);
 
                 // Lightweight init: for SQLite targets, ensure local schema exists so uploads work.
-                if (p.getUrl() != null && p.getUrl().toLowerCase().startsWith("jdbc:sqlite:")) {
+                if (isSqlite(p)) {
                     try (Connection c = ds.getConnection()) {
                         var resource = new ClassPathResource("schema.sql");
                         if (resource.exists()) {
@@ -75,11 +70,133 @@ public class MultiDataSourceConfig {
         return Map.copyOf(map);
     }
 
+    /** Read-only JdbcTemplates of the SQLite targets, keyed like {@code jdbcTemplates}; MySQL targets have none. */
+    public record ReadOnlyTemplates(Map<String, JdbcTemplate> byKey) {}
+
+    /**
+     * Separate pool of read-only connections per SQLite file for /data, /schema, aggregations and exports.
+     * With WAL they read a consistent snapshot next to the single writer instead of queueing behind it.
+     * Depends on jdbcTemplates so the writer has created the schema and switched the file to WAL first.
+     */
+    @Bean
+    public ReadOnlyTemplates readOnlyTemplates(Map<String, DbProps> dbTargets, Map<String, JdbcTemplate> jdbcTemplates,
+                                               MeterRegistry meterRegistry) {
+        Map<String, JdbcTemplate> map = new HashMap<>();
+        for (var e : dbTargets.entrySet()) {
+            String key = e.getKey().toLowerCase();
+            DbProps p = e.getValue();
+            int size = p.getReadPoolSize() != null ? p.getReadPoolSize() : 4;
+            if (!isSqlite(p) || size <= 0 || !jdbcTemplates.containsKey(key)) continue;
+
+            HikariConfig cfg = baseConfig("db-" + key + "-ro", p, meterRegistry);
+            applySqlitePragmas(cfg, p);
+            p.getDataSourceProperties().forEach(cfg::addDataSourceProperty);
+            cfg.getDataSourceProperties().remove("journal_mode"); // persistent, set by the writer
+            cfg.addDataSourceProperty("open_mode", "1");           // SQLITE_OPEN_READONLY
+            cfg.setReadOnly(true);                                 // must match the open mode
+            cfg.setMaximumPoolSize(size);
+            cfg.setMinimumIdle(0);
+            try {
+                map.put(key, new JdbcTemplate(new HikariDataSource(cfg)));
+            } catch (RuntimeException ex) {
+                log.warn("No read-only pool for '{}': {}", key, ex.getMessage());
+            }
+        }
+        return new ReadOnlyTemplates(Map.copyOf(map));
+    }
+
+    private static HikariConfig baseConfig(String poolName, DbProps p, MeterRegistry meterRegistry) {
+        HikariConfig cfg = new HikariConfig();
+        cfg.setPoolName(poolName);
+        // hikaricp.connections.{active,idle,pending,acquire,usage,timeout} tagged pool=<poolName>
+        cfg.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        cfg.setJdbcUrl(p.getUrl());
+        if (p.getDriverClassName() != null && !p.getDriverClassName().isBlank()) {
+            cfg.setDriverClassName(p.getDriverClassName());
+        }
+        if (p.getUsername() != null) cfg.setUsername(p.getUsername());
+        if (p.getPassword() != null) cfg.setPassword(p.getPassword());
+        // Start even if the DB is temporarily unreachable; acquire lazily
+        cfg.setInitializationFailTimeout(-1);
+        return cfg;
+    }
+
+    /**
+     * SQLite connection settings, applied by sqlite-jdbc on every new connection: WAL journaling,
+     * synchronous=NORMAL (durable at checkpoints, safe against corruption in WAL mode), a 16 MiB page
+     * cache and a busy timeout. mmap_size is no driver property and runs as connection init SQL.
+     */
+    private static void applySqlitePragmas(HikariConfig cfg, DbProps p) {
+        cfg.addDataSourceProperty("journal_mode", "WAL");
+        cfg.addDataSourceProperty("synchronous", "NORMAL");
+        cfg.addDataSourceProperty("cache_size", "-16000");
+        cfg.addDataSourceProperty("busy_timeout", "5000");
+        long mmap = p.getMmapSize() != null ? p.getMmapSize() : 268_435_456L;
+        if (mmap > 0) cfg.setConnectionInitSql("PRAGMA mmap_size = " + mmap);
+    }
+
+    private static boolean isSqlite(DbProps p) {
+        return SqlDialect.forJdbcUrl(p.getUrl()) == SqlDialect.SQLITE;
+    }
+
+    /**
+     * Pool sizing and driver properties: per-dialect defaults, overridden by whatever is set in dbs.&lt;key&gt;.
+     * SQLite allows a single writer per file, so its pool defaults to one connection; MySQL/MariaDB gets a
+     * larger pool, Connector/J batch rewriting and a client-side prepared statement cache. Its session
+     * {@code time_zone} is pinned to the zone Connector/J converts timestamps with (UTC unless the URL names
+     * one), so SQL on {@code ts} such as the UNIX_TIMESTAMP buckets of /aggregate sees the same epoch millis the
+     * rows were written from, whatever the JVM and server zones are.
+     */
+    static void applyPoolSettings(HikariConfig cfg, DbProps p, boolean sqlite) {
+        cfg.setMaximumPoolSize(p.getMaximumPoolSize() != null ? p.getMaximumPoolSize() : sqlite ? 1 : 10);
+        cfg.setMinimumIdle(p.getMinimumIdle() != null ? p.getMinimumIdle() : 0);
+        cfg.setConnectionTimeout((p.getConnectionTimeout() != null ? p.getConnectionTimeout()
+                : Duration.ofSeconds(sqlite ? 30 : 10)).toMillis());
+        if (p.getMaxLifetime() != null) cfg.setMaxLifetime(p.getMaxLifetime().toMillis());
+        else if (!sqlite) cfg.setMaxLifetime(Duration.ofMinutes(30).toMillis()); // well below MariaDB's wait_timeout
+        if (p.getIdleTimeout() != null) cfg.setIdleTimeout(p.getIdleTimeout().toMillis());
+
+        if (sqlite) {
+            // keep the writer connection (and with it the WAL index) open between imports
+            if (p.getMinimumIdle() == null) cfg.setMinimumIdle(1);
+            applySqlitePragmas(cfg, p);
+        } else {
+            // let Connector/J rewrite JDBC batches into multi-row INSERTs
+            cfg.addDataSourceProperty("rewriteBatchedStatements", "true");
+            boolean cache = p.getCachePrepStmts() == null || p.getCachePrepStmts();
+            cfg.addDataSourceProperty("cachePrepStmts", String.valueOf(cache));
+            cfg.addDataSourceProperty("prepStmtCacheSize",
+                    String.valueOf(p.getPrepStmtCacheSize() != null ? p.getPrepStmtCacheSize() : 250));
+            cfg.addDataSourceProperty("prepStmtCacheSqlLimit",
+                    String.valueOf(p.getPrepStmtCacheSqlLimit() != null ? p.getPrepStmtCacheSqlLimit() : 2048));
+            String url = p.getUrl() == null ? "" : p.getUrl().toLowerCase(Locale.ROOT);
+            if (!url.contains("servertimezone=") && !url.contains("connectiontimezone=")) {
+                cfg.addDataSourceProperty("connectionTimeZone", "UTC");
+            }
+            cfg.addDataSourceProperty("forceConnectionTimeZoneToSession", "true");
+        }
+        // explicit driver properties win over the defaults above
+        p.getDataSourceProperties().forEach(cfg::addDataSourceProperty);
+    }
+
     public static class DbProps {
         private String url;
         private String username;
         private String password;
         private String driverClassName;
+        // Pool tuning; null = per-dialect default (see applyPoolSettings)
+        private Integer maximumPoolSize;
+        private Integer minimumIdle;
+        private Duration connectionTimeout;
+        private Duration maxLifetime;
+        private Duration idleTimeout;
+        private Boolean cachePrepStmts;
+        private Integer prepStmtCacheSize;
+        private Integer prepStmtCacheSqlLimit;
+        private Map<String, String> dataSourceProperties = new HashMap<>();
+        // SQLite only: size of the read-only pool (0 = none) and PRAGMA mmap_size in bytes (0 = off)
+        private Integer readPoolSize;
+        private Long mmapSize;
 
         public String getUrl() { return url; }
         public void setUrl(String url) { this.url = url; }
@@ -89,5 +206,27 @@ public class MultiDataSourceConfig {
         public void setPassword(String password) { this.password = password; }
         public String getDriverClassName() { return driverClassName; }
         public void setDriverClassName(String driverClassName) { this.driverClassName = driverClassName; }
+        public Integer getMaximumPoolSize() { return maximumPoolSize; }
+        public void setMaximumPoolSize(Integer maximumPoolSize) { this.maximumPoolSize = maximumPoolSize; }
+        public Integer getMinimumIdle() { return minimumIdle; }
+        public void setMinimumIdle(Integer minimumIdle) { this.minimumIdle = minimumIdle; }
+        public Duration getConnectionTimeout() { return connectionTimeout; }
+        public void setConnectionTimeout(Duration connectionTimeout) { this.connectionTimeout = connectionTimeout; }
+        public Duration getMaxLifetime() { return maxLifetime; }
+        public void setMaxLifetime(Duration maxLifetime) { this.maxLifetime = maxLifetime; }
+        public Duration getIdleTimeout() { return idleTimeout; }
+        public void setIdleTimeout(Duration idleTimeout) { this.idleTimeout = idleTimeout; }
+        public Boolean getCachePrepStmts() { return cachePrepStmts; }
+        public void setCachePrepStmts(Boolean cachePrepStmts) { this.cachePrepStmts = cachePrepStmts; }
+        public Integer getPrepStmtCacheSize() { return prepStmtCacheSize; }
+        public void setPrepStmtCacheSize(Integer prepStmtCacheSize) { this.prepStmtCacheSize = prepStmtCacheSize; }
+        public Integer getPrepStmtCacheSqlLimit() { return prepStmtCacheSqlLimit; }
+        public void setPrepStmtCacheSqlLimit(Integer prepStmtCacheSqlLimit) { this.prepStmtCacheSqlLimit = prepStmtCacheSqlLimit; }
+        public Map<String, String> getDataSourceProperties() { return dataSourceProperties; }
+        public void setDataSourceProperties(Map<String, String> dataSourceProperties) { this.dataSourceProperties = dataSourceProperties; }
+        public Integer getReadPoolSize() { return readPoolSize; }
+        public void setReadPoolSize(Integer readPoolSize) { this.readPoolSize = readPoolSize; }
+        public Long getMmapSize() { return mmapSize; }
+        public void setMmapSize(Long mmapSize) { this.mmapSize = mmapSize; }
     }
 }
@@ -0,0 +1,64 @@
+package de.jdbcrew.devicebridge.controller;
+
+import de.jdbcrew.devicebridge.dto.RelocateStatus;
+import de.jdbcrew.devicebridge.service.RelocateService;
+import de.jdbcrew.devicebridge.service.SyncService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final SyncService syncService;
+    private final RelocateService relocateService;
+    private final String defaultSyncTarget;
+
+    public AdminController(SyncService syncService, RelocateService relocateService,
+                           @Value("${sync.default-target:db1}") String defaultSyncTarget) {
+        this.syncService = syncService;
+        this.relocateService = relocateService;
+        this.defaultSyncTarget = defaultSyncTarget;
+    }
+
+    // Copies new telemetry/measurement rows of db into the target (default: sync.default-target)
+    @PostMapping("/sync")
+    public SyncService.Result sync(@RequestParam("db") String db, @RequestParam(value = "to", required = false) String to) {
+        String target = StringUtils.hasText(to) ? to : defaultSyncTarget;
+        try {
+            return syncService.sync(db, target);
+        } catch (SyncService.SyncConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Sync läuft bereits: " + db + " -> " + target);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (SyncService.MissingCheckpointTableException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Tabelle sync_checkpoint fehlt in " + target);
+        }
+    }
+
+    // Bulk copy of all telemetry/measurements into an empty target; runs in the background, poll /relocate/{id}
+    @PostMapping("/relocate")
+    public ResponseEntity<RelocateStatus> relocate(@RequestParam("from") String from, @RequestParam("to") String to) {
+        try {
+            RelocateStatus job = relocateService.start(from, to);
+            return ResponseEntity.accepted().location(URI.create("/api/admin/relocate/" + job.id())).body(job);
+        } catch (RelocateService.RelocateConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/relocate/{id}")
+    public RelocateStatus relocation(@PathVariable String id) {
+        RelocateStatus job = relocateService.status(id);
+        if (job == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unbekannte Verlagerung: " + id);
+        return job;
+    }
+}
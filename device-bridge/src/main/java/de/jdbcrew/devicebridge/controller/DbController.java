@@ -1,204 +1,343 @@
 package de.jdbcrew.devicebridge.controller;
 
+import de.jdbcrew.devicebridge.dto.AggregateResponse;
+import de.jdbcrew.devicebridge.dto.IngestJobStatus;
+import de.jdbcrew.devicebridge.dto.TableSchema;
+import de.jdbcrew.devicebridge.dto.TelemetryRecord;
+import de.jdbcrew.devicebridge.dto.UploadResponse;
+import de.jdbcrew.devicebridge.service.BridgeMetrics;
 import de.jdbcrew.devicebridge.service.DbService;
-import jakarta.servlet.http.HttpServletRequest;
+import de.jdbcrew.devicebridge.service.IdCache;
+import de.jdbcrew.devicebridge.service.IngestQueue;
+import de.jdbcrew.devicebridge.service.IngestSpool;
+import de.jdbcrew.devicebridge.service.TelemetryBatch;
+import de.jdbcrew.devicebridge.service.TelemetryCsvPipeline;
+import de.jdbcrew.devicebridge.service.TelemetryFrameCodec;
+import de.jdbcrew.devicebridge.service.TelemetryFrameReader;
+import de.jdbcrew.devicebridge.service.TelemetryStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.time.*;
-import java.time.format.DateTimeFormatter;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/db/{db}")
 public class DbController {
 
     private static final MediaType CSV_MEDIA_TYPE = MediaType.parseMediaType("text/csv");
+    private static final Set<String> EXPORT_TABLES = Set.of("telemetry", "measurements");
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     private final DbService dbService;
+    private final IngestQueue ingestQueue;
+    private final IngestSpool ingestSpool;
+    private final TelemetryCsvPipeline csvPipeline;
+    private final TelemetryStream telemetryStream;
+    private final BridgeMetrics metrics;
+    private final int chunkSize;
 
-    public DbController(DbService dbService) {
+    public DbController(DbService dbService, IngestQueue ingestQueue, IngestSpool ingestSpool,
+                        TelemetryCsvPipeline csvPipeline, TelemetryStream telemetryStream, BridgeMetrics metrics,
+                        @Value("${ingest.chunk-rows:5000}") int chunkSize) {
         this.dbService = dbService;
+        this.ingestQueue = ingestQueue;
+        this.ingestSpool = ingestSpool;
+        this.csvPipeline = csvPipeline;
+        this.telemetryStream = telemetryStream;
+        this.metrics = metrics;
+        this.chunkSize = Math.max(1, chunkSize);
     }
 
-    // Upload final telemetry CSV: timestamp + multiple metric columns
+    // Upload final telemetry CSV: timestamp + multiple metric columns, imported chunk by chunk
+    // (large files are parsed on all cores while earlier chunks are inserted, see TelemetryCsvPipeline).
+    // While the target is unreachable the chunks go to the local spool instead (202 instead of 201).
     @PostMapping("/upload")
-    public ResponseEntity<Void> upload(@PathVariable String db, @RequestParam("file") MultipartFile file) {
+    public ResponseEntity<UploadResponse> upload(@PathVariable String db, @RequestParam("file") MultipartFile file) {
         ensureSupported(db);
         if (file == null || file.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Leere Datei");
         }
-        List<DbService.TelemetryRow> rows = parseTelemetryCsv(file);
-        if (rows.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Keine gültigen Zeilen gefunden");
+        UploadSink sink = new UploadSink(db);
+        try (InputStream in = file.getInputStream()) {
+            TelemetryCsvPipeline.Result parsed = csvPipeline.parse(db, in, file.getSize(), chunkSize, sink);
+            return sink.response(parsed.lines(), parsed.rejectedLines(), parsed.rejectedSamples());
+        } catch (DbService.RelocationInProgressException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Verlagerung nach " + db + " läuft, Import nicht möglich");
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Datei konnte nicht gelesen werden", e);
+        }
+    }
+
+    // Binary upload as raw request body: TelemetryFrameCodec stream (schema header + frames of little-endian
+    // doubles with null masks), optionally with Content-Encoding gzip/deflate. linesRead counts the rows.
+    @PostMapping(value = "/upload", consumes = TelemetryFrameCodec.MEDIA_TYPE)
+    public ResponseEntity<UploadResponse> uploadFrames(@PathVariable String db,
+                                                       @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+                                                       InputStream body) {
+        ensureSupported(db);
+        if (!TelemetryFrameReader.supportsEncoding(contentEncoding)) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Nicht unterstützte Kodierung: " + contentEncoding);
+        }
+        UploadSink sink = new UploadSink(db);
+        try (TelemetryFrameReader reader = new TelemetryFrameReader(body, contentEncoding, chunkSize)) {
+            TelemetryBatch chunk = new TelemetryBatch(chunkSize);
+            while (true) {
+                long started = System.nanoTime();
+                long bytesBefore = reader.bytesRead();
+                int rows = reader.readChunk(chunk, chunkSize);
+                long bytes = reader.bytesRead() - bytesBefore;
+                metrics.ingest(db, "parse", rows, bytes, System.nanoTime() - started);
+                if (rows == 0) break;
+                sink.accept(chunk, bytes);
+                chunk.clear();
+            }
+            return sink.response(reader.rowsRead(), 0, List.of());
+        } catch (DbService.RelocationInProgressException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Verlagerung nach " + db + " läuft, Import nicht möglich");
+        } catch (TelemetryFrameCodec.CorruptFrameException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Daten konnten nicht gelesen werden", e);
         }
-        int count = dbService.importTelemetry(db, rows);
-        if (count <= 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Keine Messwerte importiert");
+    }
+
+    // Imports (or spools) the chunks of one upload and sums up the outcome
+    private final class UploadSink implements TelemetryCsvPipeline.ChunkSink {
+        private final String db;
+        private final List<Integer> chunkRows = new ArrayList<>();
+        private long imported;
+        private long spooled;
+
+        UploadSink(String db) {
+            this.db = db;
+        }
+
+        @Override
+        public void accept(TelemetryBatch chunk, long bytes) {
+            long started = System.nanoTime();
+            IngestSpool.Outcome outcome = ingestSpool.importOrSpool(db, chunk);
+            metrics.stored(db, outcome, bytes, System.nanoTime() - started);
+            chunkRows.add(outcome.imported() + outcome.spooled());
+            imported += outcome.imported();
+            spooled += outcome.spooled();
+        }
+
+        ResponseEntity<UploadResponse> response(long lines, long rejectedLines, List<Long> rejectedSamples) {
+            if (chunkRows.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Keine gültigen Zeilen gefunden");
+            }
+            if (imported + spooled <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Keine Messwerte importiert");
+            }
+            return ResponseEntity.status(spooled > 0 ? HttpStatus.ACCEPTED : HttpStatus.CREATED).body(new UploadResponse(
+                    db, imported, spooled, chunkRows, lines, rejectedLines, rejectedSamples));
         }
-        return ResponseEntity.status(HttpStatus.CREATED).build();
     }
 
-    // Minimal CSV export placeholder to avoid errors if clicked
+    // CSV export of telemetry or measurements, streamed from a DB cursor; optional ts range and gzip
     @GetMapping("/download")
-    public ResponseEntity<StreamingResponseBody> download(@PathVariable String db) {
+    public ResponseEntity<StreamingResponseBody> download(@PathVariable String db,
+                                                          @RequestParam(value = "table", defaultValue = "telemetry") String table,
+                                                          @RequestParam(value = "from", required = false) String from,
+                                                          @RequestParam(value = "to", required = false) String to,
+                                                          @RequestParam(value = "gzip", required = false) Boolean gzipParam,
+                                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         ensureSupported(db);
+        if (!EXPORT_TABLES.contains(table)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unbekannte Tabelle: " + table);
+        }
+        Long fromMillis = QueryParams.parseTimeParam("from", from);
+        Long toMillis = QueryParams.parseTimeParam("to", to);
+        boolean gzip = gzipParam != null ? gzipParam
+                : acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
         StreamingResponseBody body = outputStream -> {
-            try (Writer writer = new java.io.OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
-                writer.write("sensor_id,ts,metric,value_num,value_bool,unit\n");
-                writer.flush();
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, 64 * 1024) : outputStream;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024)) {
+                dbService.exportCsv(db, table, fromMillis, toMillis, writer);
             }
         };
-        return ResponseEntity.ok()
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                 .contentType(CSV_MEDIA_TYPE)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"export-" + db + ".csv\"")
-                .body(body);
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"export-" + db + "-" + table + ".csv\"");
+        if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response.body(body);
+    }
+
+    // Asynchronous upload: spooled and queued, committed in groups by the db's writer; poll /ingest/{jobId}
+    @PostMapping("/ingest")
+    public ResponseEntity<IngestJobStatus> ingest(@PathVariable String db, @RequestParam("file") MultipartFile file) {
+        ensureSupported(db);
+        if (file == null || file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Leere Datei");
+        }
+        try (InputStream in = file.getInputStream()) {
+            IngestJobStatus job = ingestQueue.submit(db, in);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/db/" + db + "/ingest/" + job.id()))
+                    .body(job);
+        } catch (IngestQueue.QueueFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "5").build();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Datei konnte nicht gelesen werden", e);
+        }
+    }
+
+    @GetMapping("/ingest")
+    public List<IngestJobStatus> ingestJobs(@PathVariable String db) {
+        ensureSupported(db);
+        return ingestQueue.jobs(db);
+    }
+
+    @GetMapping("/ingest/{jobId}")
+    public IngestJobStatus ingestJob(@PathVariable String db, @PathVariable String jobId) {
+        ensureSupported(db);
+        IngestJobStatus job = ingestQueue.status(db, jobId);
+        if (job == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unbekannter Import: " + jobId);
+        return job;
     }
 
-    // Simple data view of latest entries
+    // Circuit state and backlog of the local spool (rows waiting for the target to come back)
+    @GetMapping("/spool")
+    public IngestSpool.Status spool(@PathVariable String db) {
+        ensureSupported(db);
+        return ingestSpool.status(db);
+    }
+
+    // Latest telemetry rows, keyset-paginated; the next page's cursor is returned in X-Next-Cursor
     @GetMapping("/data")
-    public ResponseEntity<List<Map<String, Object>>> data(@PathVariable String db,
-                                                          @RequestParam(value = "filter", required = false) String filterParam,
-                                                          HttpServletRequest request) {
+    public ResponseEntity<List<TelemetryRecord>> data(@PathVariable String db,
+                                                      @RequestParam(value = "filter", required = false) String filterParam,
+                                                      @RequestParam(value = "columns", required = false) String columnsParam,
+                                                      @RequestParam(value = "from", required = false) String from,
+                                                      @RequestParam(value = "to", required = false) String to,
+                                                      @RequestParam(value = "order", required = false) String order,
+                                                      @RequestParam(value = "cursor", required = false) String cursor,
+                                                      @RequestParam(value = "limit", defaultValue = "200") int limit) {
         ensureSupported(db);
+        Long fromMillis = QueryParams.parseTimeParam("from", from);
+        Long toMillis = QueryParams.parseTimeParam("to", to);
+        // a time range is served best in ts order (idx_telemetry_ts); otherwise by primary key
+        boolean orderByTs = order != null ? "ts".equalsIgnoreCase(order) : fromMillis != null || toMillis != null;
+        List<String> columns = QueryParams.splitList(columnsParam);
+        DbService.TelemetryQuery query = new DbService.TelemetryQuery(fromMillis, toMillis, columns,
+                QueryParams.parseFilter(filterParam), orderByTs, cursor,
+                Math.max(1, Math.min(QueryParams.MAX_PAGE_SIZE, limit)));
         try {
-            String sql = "SELECT id, ts, servo10_y_deg, servo11_x_deg, led12_pct, led13_pct, led14_pct, led15_pct, temp_c, press_hpa, hum_perc, mag_x, mag_y, mag_z, accel_x, accel_y, accel_z, gyro_x, gyro_y, gyro_z FROM telemetry ORDER BY id DESC LIMIT 200";
-            List<Map<String, Object>> rows = dbService.query(db, sql);
-            formatTimestampColumn(rows, "ts");
-            return ResponseEntity.ok(rows);
-        } catch (Exception e) {
+            DbService.TelemetryPage page = dbService.telemetryPage(db, query);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextCursor() != null) response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+            return response.body(page.rows());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (DataAccessException e) {
+            // e.g. telemetry table not created on this target yet
             return ResponseEntity.ok(List.of());
         }
     }
 
-    @GetMapping("/schema")
-    public ResponseEntity<List<Map<String, Object>>> schema(@PathVariable String db) {
+    // Live telemetry as server-sent events ("telemetry": LiveTelemetry), pushed after each import commit instead of
+    // polling /data; per client: projected columns, at most one event per interval, newest maxRows rows per event
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@PathVariable String db,
+                             @RequestParam(value = "columns", required = false) String columnsParam,
+                             @RequestParam(value = "interval", defaultValue = "1000") long intervalMillis,
+                             @RequestParam(value = "maxRows", defaultValue = "200") int maxRows) {
         ensureSupported(db);
-        return ResponseEntity.ok(dbService.fetchSchema(db));
+        List<String> names = QueryParams.splitList(columnsParam);
+        int[] columns = names.isEmpty()
+                ? IntStream.range(0, TelemetryBatch.COLUMN_COUNT).toArray()
+                : new int[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            columns[i] = TelemetryBatch.columnIndex(names.get(i));
+            if (columns[i] < 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unbekannte Spalte: " + names.get(i));
+        }
+        try {
+            return telemetryStream.subscribe(db, columns, intervalMillis, maxRows);
+        } catch (TelemetryStream.TooManySubscribersException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Zu viele Live-Verbindungen");
+        }
     }
 
-    private void ensureSupported(String db) {
-        if (!dbService.isSupportedDb(db)) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unbekannte Datenbank: " + db);
+    // min/max/avg/last per time bucket, for chart views over long ranges
+    @GetMapping("/aggregate")
+    public AggregateResponse aggregate(@PathVariable String db,
+                                       @RequestParam(value = "table", defaultValue = "telemetry") String table,
+                                       @RequestParam(value = "columns", required = false) String columnsParam,
+                                       @RequestParam(value = "metric", required = false) String metricParam,
+                                       @RequestParam(value = "from", required = false) String from,
+                                       @RequestParam(value = "to", required = false) String to,
+                                       @RequestParam(value = "bucket", required = false) String bucket,
+                                       @RequestParam(value = "points", defaultValue = "300") int points) {
+        ensureSupported(db);
+        if (!EXPORT_TABLES.contains(table)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unbekannte Tabelle: " + table);
+        }
+        List<String> series = QueryParams.splitList("telemetry".equals(table) ? columnsParam : metricParam);
+        DbService.AggregateQuery query = new DbService.AggregateQuery(table, series,
+                QueryParams.parseTimeParam("from", from), QueryParams.parseTimeParam("to", to),
+                QueryParams.parseBucket(bucket),
+                Math.max(1, Math.min(QueryParams.MAX_AGGREGATE_POINTS, points)));
+        try {
+            return dbService.aggregate(db, query);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
 
-    private List<DbService.TelemetryRow> parseTelemetryCsv(MultipartFile file) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            String header = reader.readLine();
-            if (header == null) return List.of();
-            List<String> cols = splitCsv(header);
-            Map<String, Integer> idx = new HashMap<>();
-            for (int i = 0; i < cols.size(); i++) idx.put(cols.get(i).trim().toLowerCase(Locale.ROOT), i);
-            String[] required = {"timestamp","servo10_y_deg","servo11_x_deg","led12_pct","led13_pct","led14_pct","led15_pct","temp_c","press_hpa","hum_perc","mag_x","mag_y","mag_z","accel_x","accel_y","accel_z","gyro_x","gyro_y","gyro_z"};
-            for (String r : required) if (!idx.containsKey(r)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Fehlende Spalte: " + r);
-
-            List<DbService.TelemetryRow> rows = new ArrayList<>();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                List<String> v = splitCsv(line);
-                java.sql.Timestamp ts = parseTimestamp(get(v, idx.get("timestamp")));
-                if (ts == null) continue;
-                rows.add(new DbService.TelemetryRow(
-                        ts,
-                        parseDouble(get(v, idx.get("servo10_y_deg"))),
-                        parseDouble(get(v, idx.get("servo11_x_deg"))),
-                        parseDouble(get(v, idx.get("led12_pct"))),
-                        parseDouble(get(v, idx.get("led13_pct"))),
-                        parseDouble(get(v, idx.get("led14_pct"))),
-                        parseDouble(get(v, idx.get("led15_pct"))),
-                        parseDouble(get(v, idx.get("temp_c"))),
-                        parseDouble(get(v, idx.get("press_hpa"))),
-                        parseDouble(get(v, idx.get("hum_perc"))),
-                        parseDouble(get(v, idx.get("mag_x"))),
-                        parseDouble(get(v, idx.get("mag_y"))),
-                        parseDouble(get(v, idx.get("mag_z"))),
-                        parseDouble(get(v, idx.get("accel_x"))),
-                        parseDouble(get(v, idx.get("accel_y"))),
-                        parseDouble(get(v, idx.get("accel_z"))),
-                        parseDouble(get(v, idx.get("gyro_x"))),
-                        parseDouble(get(v, idx.get("gyro_y"))),
-                        parseDouble(get(v, idx.get("gyro_z")))
-                ));
-            }
-            return rows;
-        } catch (IOException e) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Datei konnte nicht gelesen werden", e);
+    // Recomputes the rollup tables from the raw rows (e.g. after adding them to an existing target)
+    @PostMapping("/rollups/rebuild")
+    public DbService.RollupRebuild rebuildRollups(@PathVariable String db) {
+        ensureSupported(db);
+        try {
+            return dbService.rebuildRollups(db);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Rollup-Tabellen fehlen in " + db);
         }
     }
 
-    private List<String> splitCsv(String line) {
-        List<String> out = new ArrayList<>();
-        StringBuilder cur = new StringBuilder();
-        boolean inQuotes = false;
-        for (int i = 0; i < line.length(); i++) {
-            char ch = line.charAt(i);
-            if (ch == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') { cur.append('"'); i++; }
-                else { inQuotes = !inQuotes; }
-            } else if (ch == ',' && !inQuotes) { out.add(cur.toString().trim()); cur.setLength(0); }
-            else { cur.append(ch); }
-        }
-        out.add(cur.toString().trim());
-        return out;
-    }
-    private String get(List<String> list, int idx) { return idx >= 0 && idx < list.size() ? list.get(idx) : ""; }
-    private String emptyToNull(String s) { return StringUtils.hasText(s) ? s : null; }
-    private Double parseDouble(String s) { try { return StringUtils.hasText(s) ? Double.valueOf(s) : null; } catch (Exception e) { return null; } }
-    private Integer parseInt(String s) { try { return StringUtils.hasText(s) ? Integer.valueOf(s) : null; } catch (Exception e) { return null; } }
-    private java.sql.Timestamp parseTimestamp(String s) {
-        if (!StringUtils.hasText(s)) return null;
-        try { return java.sql.Timestamp.from(java.time.Instant.parse(s)); } catch (Exception ignored) {}
-        try { return java.sql.Timestamp.valueOf(java.time.LocalDateTime.parse(s)); } catch (Exception ignored) {}
-        try { var odt = java.time.OffsetDateTime.parse(s); return java.sql.Timestamp.from(odt.toInstant()); } catch (Exception ignored) {}
-        try {
-            var fmt = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSS]");
-            return java.sql.Timestamp.valueOf(java.time.LocalDateTime.parse(s, fmt));
-        } catch (Exception ignored) {}
-        return null;
-    }
-
-    private void formatTimestampColumn(List<Map<String, Object>> rows, String col) {
-        if (rows == null || rows.isEmpty()) return;
-        DateTimeFormatter outFmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        ZoneId zone = ZoneId.systemDefault();
-        for (Map<String, Object> r : rows) {
-            Object v = r.get(col);
-            if (v == null) continue;
-            String formatted = null;
-            if (v instanceof java.sql.Timestamp ts) {
-                formatted = outFmt.format(ts.toInstant().atZone(zone).toLocalDateTime());
-            } else if (v instanceof Number num) {
-                long ms = num.longValue();
-                try {
-                    formatted = outFmt.format(Instant.ofEpochMilli(ms).atZone(zone).toLocalDateTime());
-                } catch (Exception ignore) { /* leave null */ }
-            } else if (v instanceof String s) {
-                // try parse numeric millis
-                try {
-                    long ms = Long.parseLong(s.trim());
-                    formatted = outFmt.format(Instant.ofEpochMilli(ms).atZone(zone).toLocalDateTime());
-                } catch (Exception ignore) {
-                    // fall back: pass through
-                    formatted = s;
-                }
-            }
-            if (formatted != null) {
-                r.put(col, formatted);
-            }
+    // cached per target; refresh=true drops the cached entry first (e.g. after manual DDL)
+    @GetMapping("/schema")
+    public ResponseEntity<List<TableSchema>> schema(@PathVariable String db,
+                                                    @RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
+        ensureSupported(db);
+        if (refresh) dbService.invalidateSchema(db);
+        return ResponseEntity.ok(dbService.fetchSchema(db));
+    }
+
+    // Hit/miss counters of the shared device/sensor id cache
+    @GetMapping("/id-cache")
+    public IdCache.Stats idCache(@PathVariable String db) {
+        ensureSupported(db);
+        return dbService.idCacheStats(db);
+    }
+
+    private void ensureSupported(String db) {
+        if (!dbService.isSupportedDb(db)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unbekannte Datenbank: " + db);
         }
     }
 }
@@ -1,14 +1,18 @@
 package de.jdbcrew.devicebridge.controller;
 
 import de.jdbcrew.devicebridge.dto.CommandRequest;
+import de.jdbcrew.devicebridge.dto.DeviceStatus;
 import de.jdbcrew.devicebridge.dto.StatusResponse;
+import de.jdbcrew.devicebridge.service.BridgeMetrics;
 import de.jdbcrew.devicebridge.service.DeviceService;
+import de.jdbcrew.devicebridge.service.DeviceStatusService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -17,8 +21,13 @@ import java.util.Map;
 public class DeviceController {
 
     private final Map<String, DeviceService> servicesByTarget;
+    private final BridgeMetrics metrics;
+    private final DeviceStatusService statusService;
 
-    public DeviceController(Map<String, DeviceService> services) {
+    public DeviceController(Map<String, DeviceService> services, BridgeMetrics metrics,
+                            DeviceStatusService statusService) {
+        this.metrics = metrics;
+        this.statusService = statusService;
         Map<String, DeviceService> resolved = new LinkedHashMap<>();
         if (services != null) {
             for (DeviceService service : services.values()) {
@@ -40,14 +49,28 @@ public class DeviceController {
         return Map.of("status", "UP");
     }
 
+    /** Fleet overview: every target, polled in parallel and served from a short-lived cache. */
+    @GetMapping("/devices/status")
+    public List<DeviceStatus> statusAll() {
+        return statusService.statusAll();
+    }
+
     @GetMapping("/devices/{target}/status")
     public StatusResponse status(@PathVariable String target) {
-        return resolve(target).getStatus();
+        DeviceService service = resolve(target);
+        long started = System.nanoTime();
+        StatusResponse status = service.getStatus();
+        metrics.deviceCall(service.getTarget(), "status", status.reachable(), System.nanoTime() - started);
+        return status;
     }
 
     @PostMapping("/devices/{target}/command")
     public StatusResponse command(@PathVariable String target, @Valid @RequestBody CommandRequest request) {
-        return resolve(target).runCommand(request.command());
+        DeviceService service = resolve(target);
+        long started = System.nanoTime();
+        StatusResponse result = service.runCommand(request.command());
+        metrics.deviceCall(service.getTarget(), "command", result.reachable(), System.nanoTime() - started);
+        return result;
     }
 
     private DeviceService resolve(String target) {
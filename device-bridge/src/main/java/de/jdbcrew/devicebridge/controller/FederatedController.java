@@ -0,0 +1,116 @@
+package de.jdbcrew.devicebridge.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jdbcrew.devicebridge.service.DbService;
+import de.jdbcrew.devicebridge.service.FederatedQueryService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Same query on several dbs targets at once. The response is NDJSON: one line per target
+ * ({@code {"db":…,"result":…,"error":…,"millis":…}}), written as soon as that target has answered.
+ */
+@RestController
+@RequestMapping("/api/federated")
+public class FederatedController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final long MAX_TIMEOUT_MILLIS = 60_000;
+
+    private final DbService dbService;
+    private final FederatedQueryService federated;
+    private final ObjectMapper objectMapper;
+
+    public FederatedController(DbService dbService, FederatedQueryService federated, ObjectMapper objectMapper) {
+        this.dbService = dbService;
+        this.federated = federated;
+        this.objectMapper = objectMapper;
+    }
+
+    // Latest telemetry rows of every target (first page of /api/db/{db}/data each)
+    @GetMapping("/data")
+    public ResponseEntity<StreamingResponseBody> data(@RequestParam(value = "dbs", required = false) String dbs,
+                                                      @RequestParam(value = "filter", required = false) String filterParam,
+                                                      @RequestParam(value = "columns", required = false) String columnsParam,
+                                                      @RequestParam(value = "from", required = false) String from,
+                                                      @RequestParam(value = "to", required = false) String to,
+                                                      @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                                      @RequestParam(value = "timeoutMs", required = false) Long timeoutMs) {
+        Long fromMillis = QueryParams.parseTimeParam("from", from);
+        Long toMillis = QueryParams.parseTimeParam("to", to);
+        DbService.TelemetryQuery query = new DbService.TelemetryQuery(fromMillis, toMillis,
+                QueryParams.splitList(columnsParam), QueryParams.parseFilter(filterParam),
+                fromMillis != null || toMillis != null, null,
+                Math.max(1, Math.min(QueryParams.MAX_PAGE_SIZE, limit)));
+        return stream(targets(dbs), timeoutMs, db -> dbService.telemetryPage(db, query).rows());
+    }
+
+    // Bucketed aggregates of every target, as /api/db/{db}/aggregate
+    @GetMapping("/aggregate")
+    public ResponseEntity<StreamingResponseBody> aggregate(@RequestParam(value = "dbs", required = false) String dbs,
+                                                           @RequestParam(value = "table", defaultValue = "telemetry") String table,
+                                                           @RequestParam(value = "columns", required = false) String columnsParam,
+                                                           @RequestParam(value = "metric", required = false) String metricParam,
+                                                           @RequestParam(value = "from", required = false) String from,
+                                                           @RequestParam(value = "to", required = false) String to,
+                                                           @RequestParam(value = "bucket", required = false) String bucket,
+                                                           @RequestParam(value = "points", defaultValue = "300") int points,
+                                                           @RequestParam(value = "timeoutMs", required = false) Long timeoutMs) {
+        if (!"telemetry".equals(table) && !"measurements".equals(table)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unbekannte Tabelle: " + table);
+        }
+        DbService.AggregateQuery query = new DbService.AggregateQuery(table,
+                QueryParams.splitList("telemetry".equals(table) ? columnsParam : metricParam),
+                QueryParams.parseTimeParam("from", from), QueryParams.parseTimeParam("to", to),
+                QueryParams.parseBucket(bucket), Math.max(1, Math.min(QueryParams.MAX_AGGREGATE_POINTS, points)));
+        return stream(targets(dbs), timeoutMs, db -> dbService.aggregate(db, query));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(List<String> targets, Long timeoutMs, Function<String, ?> query) {
+        long timeout = timeoutMs != null ? Math.max(1, Math.min(MAX_TIMEOUT_MILLIS, timeoutMs))
+                : federated.defaultTimeoutMillis();
+        StreamingResponseBody body = out -> {
+            try {
+                federated.query(targets, timeout, query, r -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(r));
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Federated query interrupted");
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    // comma-separated dbKeys, default: all configured targets
+    private List<String> targets(String dbs) {
+        List<String> requested = QueryParams.splitList(dbs);
+        if (requested.isEmpty()) return new ArrayList<>(new TreeSet<>(dbService.supportedDatabases()));
+        Set<String> keys = new LinkedHashSet<>();
+        for (String db : requested) {
+            if (!dbService.isSupportedDb(db)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unbekannte Datenbank: " + db);
+            }
+            keys.add(db.toLowerCase(Locale.ROOT));
+        }
+        return new ArrayList<>(keys);
+    }
+}
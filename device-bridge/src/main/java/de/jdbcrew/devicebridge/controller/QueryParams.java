@@ -0,0 +1,82 @@
+package de.jdbcrew.devicebridge.controller;
+
+import de.jdbcrew.devicebridge.service.DbService;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Request parameter parsing shared by the per-db and the federated query endpoints
+final class QueryParams {
+
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_AGGREGATE_POINTS = 5000;
+    private static final long MIN_BUCKET_MILLIS = 1000;
+    private static final Pattern BUCKET_PATTERN = Pattern.compile("(\\d{1,9})(ms|s|m|h|d)?");
+    private static final Pattern FILTER_CONDITION =
+            Pattern.compile("\\s*([A-Za-z0-9_]+)\\s*(<=|>=|!=|=|<|>)\\s*(\\S+)\\s*");
+
+    private QueryParams() {}
+
+    // ISO-8601 instant/offset, local date-time (server zone) or epoch millis
+    static Long parseTimeParam(String name, String value) {
+        if (value == null || value.isBlank()) return null;
+        String v = value.trim();
+        try {
+            if (v.chars().allMatch(Character::isDigit)) return Long.parseLong(v);
+            try { return OffsetDateTime.parse(v).toInstant().toEpochMilli(); } catch (DateTimeException ignored) {}
+            try { return Instant.parse(v).toEpochMilli(); } catch (DateTimeException ignored) {}
+            return LocalDateTime.parse(v).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException | NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ungültiger Zeitpunkt für " + name + ": " + value);
+        }
+    }
+
+    static List<String> splitList(String value) {
+        if (!StringUtils.hasText(value)) return List.of();
+        return Arrays.stream(value.split(",")).map(String::trim).filter(StringUtils::hasText).toList();
+    }
+
+    // "30s", "5m", "1h", "1d" or plain millis; 0 = derive from range
+    static long parseBucket(String value) {
+        if (!StringUtils.hasText(value)) return 0;
+        var m = BUCKET_PATTERN.matcher(value.trim().toLowerCase(Locale.ROOT));
+        if (m.matches()) {
+            long n = Long.parseLong(m.group(1));
+            long unit = switch (m.group(2) == null ? "ms" : m.group(2)) {
+                case "s" -> 1_000L;
+                case "m" -> 60_000L;
+                case "h" -> 3_600_000L;
+                case "d" -> 86_400_000L;
+                default -> 1L;
+            };
+            if (n * unit >= MIN_BUCKET_MILLIS) return n * unit;
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ungültige Bucket-Größe: " + value);
+    }
+
+    // "temp_c>20; hum_perc<=50" -> numeric conditions, combined with AND
+    static List<DbService.Condition> parseFilter(String filter) {
+        if (!StringUtils.hasText(filter)) return List.of();
+        List<DbService.Condition> out = new ArrayList<>();
+        for (String part : filter.split("[;,]")) {
+            if (part.isBlank()) continue;
+            var m = FILTER_CONDITION.matcher(part);
+            if (!m.matches()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ungültiger Filter: " + part.trim());
+            }
+            try {
+                out.add(new DbService.Condition(m.group(1).toLowerCase(Locale.ROOT), m.group(2), Double.parseDouble(m.group(3))));
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ungültiger Filter: " + part.trim());
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,15 @@
+package de.jdbcrew.devicebridge.dto;
+
+import java.util.List;
+
+/**
+ * Downsampled series of {@code /aggregate}. Each bucket starts at {@code ts} (epoch millis, aligned to
+ * {@code bucketMillis}); {@code last} is the value of the newest non-null row in the bucket.
+ * {@code source} is {@code raw} or the rollup the buckets were merged from, e.g. {@code rollup:1h}.
+ */
+public record AggregateResponse(String db, String table, long bucketMillis, String source, List<Series> series) {
+
+    public record Series(String name, List<Bucket> buckets) {}
+
+    public record Bucket(long ts, long count, double min, double max, double avg, Double last) {}
+}
@@ -0,0 +1,23 @@
+package de.jdbcrew.devicebridge.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One target of {@code /api/devices/status}: the last {@link StatusResponse} plus when it was taken.
+ * {@code stale} means the entry is older than {@code devices.status.ttl} and a refresh is already running.
+ */
+public record DeviceStatus(
+        String target,
+        boolean reachable,
+        String message,
+        Map<String, Object> data,
+        Instant checkedAt,
+        long ageMillis,
+        boolean stale
+) {
+    public static DeviceStatus of(StatusResponse status, Instant checkedAt, long ageMillis, boolean stale) {
+        return new DeviceStatus(status.target(), status.reachable(), status.message(), status.data(),
+                checkedAt, ageMillis, stale);
+    }
+}
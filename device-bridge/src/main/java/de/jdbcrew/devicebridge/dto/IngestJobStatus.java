@@ -0,0 +1,27 @@
+package de.jdbcrew.devicebridge.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Snapshot of an asynchronous upload. {@code state} is one of QUEUED, RUNNING, DONE, FAILED;
+ * {@code rowsImported} only counts rows whose group commit succeeded; {@code rowsSpooled} were parked in the
+ * local spool because the target was unreachable and are imported once it is back.
+ */
+public record IngestJobStatus(
+        String id,
+        String db,
+        String state,
+        long rowsImported,
+        long rowsSpooled,
+        long linesRead,
+        long rejectedLines,
+        List<Long> rejectedLineSamples,
+        int commits,
+        double rowsPerSecond,
+        String error,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt,
+        int queuedJobs
+) {}
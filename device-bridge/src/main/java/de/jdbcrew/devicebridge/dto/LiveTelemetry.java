@@ -0,0 +1,9 @@
+package de.jdbcrew.devicebridge.dto;
+
+import java.util.List;
+
+/**
+ * One event of {@code /stream}: the newest committed rows since the previous event, oldest first, and how many
+ * rows were coalesced away because more arrived than the subscriber takes per event.
+ */
+public record LiveTelemetry(List<TelemetryRecord> rows, long dropped) {}
@@ -0,0 +1,29 @@
+package de.jdbcrew.devicebridge.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Snapshot of a table relocation. {@code state} is one of RUNNING, DONE, FAILED; {@code phase} names the
+ * step in progress (sensors, telemetry, measurements, verify, rollups). {@code checks} holds the row count and
+ * checksum comparison of every table copied so far.
+ */
+public record RelocateStatus(
+        String id,
+        String from,
+        String to,
+        String state,
+        String phase,
+        int workers,
+        long rowsTotal,
+        long rowsCopied,
+        double rowsPerSecond,
+        List<TableCheck> checks,
+        String error,
+        Instant startedAt,
+        Instant finishedAt
+) {
+    /** Checksums are order-independent sums of per-row hashes over the copied columns. */
+    public record TableCheck(String table, long sourceRows, long targetRows, long sourceChecksum,
+                             long targetChecksum, boolean match) {}
+}
@@ -0,0 +1,16 @@
+package de.jdbcrew.devicebridge.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One table of {@code /schema}. {@code rowEstimate} comes from the database statistics and may lag behind
+ * (null if unknown). Column fields are named like SQLite's {@code PRAGMA table_info}: {@code notnull} is 0/1,
+ * {@code pk} is the 1-based position in the primary key or 0.
+ */
+public record TableSchema(String name, Long rowEstimate, List<Column> columns) {
+
+    public record Column(String name, String type, int notnull, int pk,
+                         @JsonProperty("dflt_value") String defaultValue) {}
+}
@@ -0,0 +1,41 @@
+package de.jdbcrew.devicebridge.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import de.jdbcrew.devicebridge.service.TelemetryBatch;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One telemetry row of a {@code /data} page. {@code columns} are indexes into {@link TelemetryBatch#COLUMNS}
+ * (shared by all rows of a page), {@code values} holds the projected values with {@code NaN} for NULL.
+ * Serialized as a flat JSON object: {@code id}, {@code ts} (server-local {@code yyyy-MM-dd HH:mm:ss}) and the
+ * columns. {@code id} is null, and left out, for the live rows of {@code /stream}, which are pushed without one.
+ */
+public record TelemetryRecord(Long id, long tsMillis, int[] columns, double[] values) implements JsonSerializable {
+
+    private static final DateTimeFormatter TS_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartObject();
+        if (id != null) gen.writeNumberField("id", id);
+        gen.writeStringField("ts", TS_FORMAT.format(Instant.ofEpochMilli(tsMillis)));
+        for (int i = 0; i < columns.length; i++) {
+            gen.writeFieldName(TelemetryBatch.COLUMNS.get(columns[i]));
+            if (Double.isNaN(values[i])) gen.writeNull(); else gen.writeNumber(values[i]);
+        }
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+}
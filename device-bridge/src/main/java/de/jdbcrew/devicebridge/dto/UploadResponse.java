@@ -0,0 +1,13 @@
+package de.jdbcrew.devicebridge.dto;
+
+import java.util.List;
+
+public record UploadResponse(
+        String db,
+        long rowsImported,
+        long rowsSpooled,
+        List<Integer> chunkRows,
+        long linesRead,
+        long rejectedLines,
+        List<Long> rejectedLineSamples
+) {}
@@ -0,0 +1,363 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * Line-oriented CSV tokenizer working on reusable char buffers.
+ * <p>
+ * Lines end at {@code \n}, {@code \r} or {@code \r\n} (like {@link java.io.BufferedReader#readLine()}).
+ * Quote handling is the one the upload always had: a {@code "} toggles quoting anywhere in a field,
+ * {@code ""} inside quotes is a literal quote, commas split only outside quotes, and every field is
+ * trimmed after unquoting. Fields are kept as offsets into one buffer per line, so numbers and
+ * timestamps are parsed without creating a String per field and without exceptions.
+ */
+public final class CsvTokenizer {
+
+    /** Returned by {@link #epochMillisAt(int)} when the field is not a supported timestamp. */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long DAYS_0000_TO_1970 = 719_528L;
+
+    private final Reader in;
+    private char[] cbuf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private boolean skipLF;
+
+    private char[] fbuf = new char[256];
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    private int fieldCount;
+    private boolean blankLine;
+
+    private final ZoneRules zoneRules;
+    private final int fixedOffsetSeconds;
+    private long cachedMinute = Long.MIN_VALUE;
+    private int cachedOffsetSeconds;
+
+    public CsvTokenizer(Reader in) {
+        this(in, 64 * 1024, ZoneId.systemDefault());
+    }
+
+    /**
+     * @param zone zone used for timestamps without offset (the upload used the JVM default zone)
+     */
+    public CsvTokenizer(Reader in, int bufferSize, ZoneId zone) {
+        this.in = in;
+        this.cbuf = new char[Math.max(16, bufferSize)];
+        this.zoneRules = zone.getRules();
+        this.fixedOffsetSeconds = zoneRules.isFixedOffset()
+                ? zoneRules.getOffset(java.time.Instant.EPOCH).getTotalSeconds()
+                : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Advances to the next line and splits it into fields.
+     *
+     * @return false once the input is exhausted
+     */
+    public boolean nextLine() throws IOException {
+        int scan = pos;
+        for (;;) {
+            if (skipLF && pos < limit) {
+                if (cbuf[pos] == '\n') pos++;
+                skipLF = false;
+                scan = pos;
+            }
+            while (scan < limit) {
+                char c = cbuf[scan];
+                if (c == '\n' || c == '\r') {
+                    tokenize(pos, scan);
+                    pos = scan + 1;
+                    skipLF = c == '\r';
+                    return true;
+                }
+                scan++;
+            }
+            int pending = limit - pos;
+            if (!fill()) {
+                if (limit > pos) {
+                    tokenize(pos, limit);
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            scan = pos + pending;
+        }
+    }
+
+    /** True if the current line only consists of whitespace. */
+    public boolean isBlankLine() {
+        return blankLine;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /** Allocating accessor, meant for header lines. Missing fields are returned as empty string. */
+    public String stringAt(int field) {
+        if (field < 0 || field >= fieldCount) return "";
+        return new String(fbuf, starts[field], ends[field] - starts[field]);
+    }
+
+    /**
+     * Parses a decimal number ({@code [+-]digits[.digits][(e|E)[+-]digits][dDfF]}).
+     * Blank, missing or malformed fields yield {@link Double#NaN}; callers treat NaN as SQL NULL.
+     */
+    public double doubleAt(int field) {
+        if (field < 0 || field >= fieldCount) return Double.NaN;
+        final int start = starts[field];
+        final int end = ends[field];
+        int i = start;
+        if (i == end) return Double.NaN;
+        boolean neg = false;
+        char c = fbuf[i];
+        if (c == '-' || c == '+') {
+            neg = c == '-';
+            if (++i == end) return Double.NaN;
+        }
+        long mantissa = 0;
+        int sig = 0;
+        int exp10 = 0;
+        boolean anyDigit = false;
+        while (i < end && (c = fbuf[i]) >= '0' && c <= '9') {
+            anyDigit = true;
+            if (sig < 18) {
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) sig++;
+            } else {
+                exp10++;
+            }
+            i++;
+        }
+        if (i < end && fbuf[i] == '.') {
+            i++;
+            while (i < end && (c = fbuf[i]) >= '0' && c <= '9') {
+                anyDigit = true;
+                if (sig < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) sig++;
+                    exp10--;
+                }
+                i++;
+            }
+        }
+        if (!anyDigit) return Double.NaN;
+        if (i < end && ((c = fbuf[i]) == 'e' || c == 'E')) {
+            if (++i == end) return Double.NaN;
+            boolean expNeg = false;
+            c = fbuf[i];
+            if (c == '-' || c == '+') {
+                expNeg = c == '-';
+                if (++i == end) return Double.NaN;
+            }
+            int exp = 0;
+            boolean expDigit = false;
+            while (i < end && (c = fbuf[i]) >= '0' && c <= '9') {
+                expDigit = true;
+                if (exp < 100_000) exp = exp * 10 + (c - '0');
+                i++;
+            }
+            if (!expDigit) return Double.NaN;
+            exp10 += expNeg ? -exp : exp;
+        }
+        if (i < end && ((c = fbuf[i]) == 'd' || c == 'D' || c == 'f' || c == 'F')) i++;
+        if (i != end) return Double.NaN;
+
+        if (mantissa == 0) return neg ? -0.0 : 0.0;
+        if (sig <= 15 && exp10 >= -22 && exp10 <= 22) {
+            // exact mantissa and exact power of ten: one IEEE operation, correctly rounded
+            double v = exp10 < 0 ? mantissa / POW10[-exp10] : mantissa * POW10[exp10];
+            return neg ? -v : v;
+        }
+        // long mantissas or extreme exponents; syntax is already validated, so this cannot throw
+        return Double.parseDouble(new String(fbuf, start, end - start));
+    }
+
+    /**
+     * Parses the timestamp formats the upload accepts into epoch millis:
+     * ISO date-time with {@code T} (seconds and fraction optional) with {@code Z}, an offset
+     * {@code ±HH:MM[:SS]} or no zone, and {@code yyyy-MM-dd HH:mm:ss[.SSS]} without zone.
+     * Timestamps without zone are interpreted in the tokenizer's zone.
+     *
+     * @return epoch millis, or {@link #NO_TIMESTAMP}
+     */
+    public long epochMillisAt(int field) {
+        if (field < 0 || field >= fieldCount) return NO_TIMESTAMP;
+        final int s = starts[field];
+        final int e = ends[field];
+        if (e - s < 16) return NO_TIMESTAMP;
+        int year = digits(s, 4);
+        int month = digits(s + 5, 2);
+        int day = digits(s + 8, 2);
+        int hour = digits(s + 11, 2);
+        int minute = digits(s + 14, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || fbuf[s + 4] != '-' || fbuf[s + 7] != '-' || fbuf[s + 13] != ':') {
+            return NO_TIMESTAMP;
+        }
+        char sep = fbuf[s + 10];
+        boolean iso = sep == 'T';
+        if (!iso && sep != ' ') return NO_TIMESTAMP;
+
+        int i = s + 16;
+        int second = 0;
+        int millis = 0;
+        boolean hasSeconds = false;
+        if (i < e && fbuf[i] == ':') {
+            if (i + 3 > e || (second = digits(i + 1, 2)) < 0 || second > 59) return NO_TIMESTAMP;
+            hasSeconds = true;
+            i += 3;
+        }
+        if (!iso && !hasSeconds) return NO_TIMESTAMP;
+        if (i < e && fbuf[i] == '.') {
+            if (!hasSeconds) return NO_TIMESTAMP;
+            int n = 0;
+            i++;
+            while (i < e && fbuf[i] >= '0' && fbuf[i] <= '9') {
+                if (n < 3) millis = millis * 10 + (fbuf[i] - '0');
+                n++;
+                i++;
+            }
+            if (n == 0 || n > 9 || (!iso && n != 3)) return NO_TIMESTAMP;
+            for (; n < 3; n++) millis *= 10;
+        }
+
+        long localSeconds = (epochDay(year, month, day) * 24 + hour) * 3600L + minute * 60L + second;
+        long offsetSeconds;
+        if (i == e) {
+            offsetSeconds = localOffsetSeconds(localSeconds);
+        } else if (!iso) {
+            return NO_TIMESTAMP;
+        } else if (fbuf[i] == 'Z' && i + 1 == e) {
+            offsetSeconds = 0;
+        } else if ((fbuf[i] == '+' || fbuf[i] == '-') && (e - i == 6 || e - i == 9)) {
+            int oh = digits(i + 1, 2);
+            int om = digits(i + 4, 2);
+            int os = e - i == 9 ? digits(i + 7, 2) : 0;
+            if (oh < 0 || oh > 18 || om < 0 || om > 59 || os < 0 || os > 59 || fbuf[i + 3] != ':'
+                    || (e - i == 9 && fbuf[i + 6] != ':')) {
+                return NO_TIMESTAMP;
+            }
+            offsetSeconds = oh * 3600L + om * 60L + os;
+            if (fbuf[i] == '-') offsetSeconds = -offsetSeconds;
+        } else {
+            return NO_TIMESTAMP;
+        }
+        return (localSeconds - offsetSeconds) * 1000L + millis;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) return false;
+        int pending = limit - pos;
+        if (pos > 0) {
+            System.arraycopy(cbuf, pos, cbuf, 0, pending);
+            pos = 0;
+            limit = pending;
+        }
+        if (limit == cbuf.length) cbuf = Arrays.copyOf(cbuf, cbuf.length * 2);
+        int n = in.read(cbuf, limit, cbuf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    private void tokenize(int from, int to) {
+        if (fbuf.length < to - from) fbuf = new char[Math.max(to - from, fbuf.length * 2)];
+        fieldCount = 0;
+        blankLine = true;
+        int out = 0;
+        int fieldStart = 0;
+        boolean inQuotes = false;
+        for (int i = from; i < to; i++) {
+            char ch = cbuf[i];
+            if (ch > ' ') blankLine = false;
+            if (ch == '"') {
+                if (inQuotes && i + 1 < to && cbuf[i + 1] == '"') { fbuf[out++] = '"'; i++; }
+                else { inQuotes = !inQuotes; }
+            } else if (ch == ',' && !inQuotes) {
+                addField(fieldStart, out);
+                fieldStart = out;
+            } else {
+                fbuf[out++] = ch;
+            }
+        }
+        addField(fieldStart, out);
+    }
+
+    private void addField(int s, int e) {
+        while (s < e && fbuf[s] <= ' ') s++;
+        while (e > s && fbuf[e - 1] <= ' ') e--;
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = s;
+        ends[fieldCount] = e;
+        fieldCount++;
+    }
+
+    private int digits(int at, int count) {
+        int v = 0;
+        for (int i = at; i < at + count; i++) {
+            char c = fbuf[i];
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private int localOffsetSeconds(long localSeconds) {
+        if (fixedOffsetSeconds != Integer.MIN_VALUE) return fixedOffsetSeconds;
+        // offsets only change on minute boundaries; consecutive log lines hit the cache
+        long minute = Math.floorDiv(localSeconds, 60);
+        if (minute != cachedMinute) {
+            cachedMinute = minute;
+            cachedOffsetSeconds = zoneRules.getOffset(LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC))
+                    .getTotalSeconds();
+        }
+        return cachedOffsetSeconds;
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    // same arithmetic as LocalDate.toEpochDay, for years 0..9999
+    private static long epochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y + (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeap(year)) total--;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+}
@@ -1,22 +1,113 @@
 package de.jdbcrew.devicebridge.service;
 
+import com.zaxxer.hikari.HikariDataSource;
+import de.jdbcrew.devicebridge.config.MultiDataSourceConfig;
+import de.jdbcrew.devicebridge.dto.AggregateResponse;
+import de.jdbcrew.devicebridge.dto.TableSchema;
+import de.jdbcrew.devicebridge.dto.TelemetryRecord;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 @Service
 public class DbService {
 
+    /** An import into a target that {@link RelocateService} is copying into. */
+    public static class RelocationInProgressException extends IllegalStateException {
+        public RelocationInProgressException(String message) {
+            super(message);
+        }
+    }
+
+    private static final int MEASUREMENT_BATCH_SIZE = 1000;
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    private static final int ROLLUP_REBUILD_PAGE = 5000;
+    // key of the SQLite target whose writer thread this is; null on every other thread
+    private static final ThreadLocal<String> WRITER_OF = new ThreadLocal<>();
+    private static final String MEASUREMENT_INSERT =
+            "INSERT INTO measurements (sensor_id, ts, location, metric, value_num, value_bool, value_text, unit, meta_json) VALUES ";
+    private static final int MEASUREMENT_COLUMNS = 9;
+    private static final String TELEMETRY_INSERT =
+            "INSERT INTO telemetry (ts, " + String.join(", ", TelemetryBatch.COLUMNS) + ") VALUES ";
+
     private final Map<String, JdbcTemplate> jdbcByKey;
+    private final Map<String, JdbcTemplate> readByKey;
+    private final Map<String, TransactionTemplate> txByKey;
+    private final Map<String, ExecutorService> sqliteWriters;
     private final Set<String> supported; // dynamisch aus Config
+    private final Map<String, SqlDialect> dialects;
+    private final IdCache idCache;
+    private final BridgeMetrics metrics;
+    private final TelemetryStream stream;
+    private final Map<String, Boolean> rollupTables = new java.util.concurrent.ConcurrentHashMap<>();
+    private final Map<String, CachedSchema> schemaCache = new java.util.concurrent.ConcurrentHashMap<>();
+    private final Set<String> relocating = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    private final long schemaTtlNanos;
 
-    public DbService(Map<String, JdbcTemplate> jdbcTemplates) {
+    public DbService(Map<String, JdbcTemplate> jdbcTemplates, MultiDataSourceConfig.ReadOnlyTemplates readOnlyTemplates,
+                     IdCache idCache, BridgeMetrics metrics, TelemetryStream stream,
+                     @Value("${schema.cache-ttl:5m}") Duration schemaTtl) {
         this.jdbcByKey = jdbcTemplates;
+        this.metrics = metrics;
+        this.stream = stream;
+        this.schemaTtlNanos = schemaTtl.toNanos();
+        this.readByKey = readOnlyTemplates.byKey();
+        this.idCache = idCache;
+        // one local transaction manager per target; there is no global DataSource bean
+        Map<String, TransactionTemplate> tx = new HashMap<>();
+        for (var e : jdbcTemplates.entrySet()) {
+            DataSource ds = e.getValue().getDataSource();
+            if (ds != null) tx.put(e.getKey(), new TransactionTemplate(new DataSourceTransactionManager(ds)));
+        }
+        this.txByKey = Map.copyOf(tx);
+        // dialect per target, fixed by the JDBC URL the pool was created with
+        Map<String, SqlDialect> dialects = new HashMap<>();
+        for (var e : jdbcTemplates.entrySet()) {
+            String url = e.getValue().getDataSource() instanceof HikariDataSource h ? h.getJdbcUrl() : null;
+            dialects.put(e.getKey().toLowerCase(Locale.ROOT), SqlDialect.forJdbcUrl(url));
+        }
+        this.dialects = Map.copyOf(dialects);
+        // SQLite allows one writer per file: imports queue here instead of failing with SQLITE_BUSY
+        Map<String, ExecutorService> writers = new HashMap<>();
+        for (var e : this.dialects.entrySet()) {
+            if (!e.getValue().singleWriter()) continue;
+            String key = e.getKey();
+            writers.put(key, Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(() -> {
+                    WRITER_OF.set(key);
+                    r.run();
+                }, "sqlite-writer-" + key);
+                t.setDaemon(true);
+                return t;
+            }));
+        }
+        this.sqliteWriters = Map.copyOf(writers);
         // erlaubte Keys aus application.yml (dbs: …)
         this.supported = Set.copyOf(
                 jdbcTemplates.keySet().stream()
@@ -33,18 +124,76 @@ public class DbService {
         return supported;
     }
 
+    public IdCache.Stats idCacheStats(String dbKey) {
+        jdbc(dbKey);
+        return idCache.stats(dbKey);
+    }
+
     private JdbcTemplate jdbc(String key) {
         JdbcTemplate jt = jdbcByKey.get(key.toLowerCase(Locale.ROOT));
         if (jt == null) throw new IllegalArgumentException("Unknown database: " + key);
         return jt;
     }
 
+    // Read-only pool of a SQLite target (WAL snapshot reads); the regular pool elsewhere
+    private JdbcTemplate reader(String key) {
+        JdbcTemplate jt = readByKey.get(key.toLowerCase(Locale.ROOT));
+        return jt != null ? jt : jdbc(key);
+    }
+
+    /** Runs a write on the target's single writer thread (SQLite) or directly on the caller (MySQL). */
+    private <T> T write(String key, Supplier<T> work) {
+        String k = key.toLowerCase(Locale.ROOT);
+        ExecutorService writer = sqliteWriters.get(k);
+        // inline on the target's own writer (nested writes); a write to another target still queues
+        if (writer == null || k.equals(WRITER_OF.get())) return work.get();
+        Future<T> result = writer.submit(work::get);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writer of " + key, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // While set, imports into the target are refused: the copy holds SQLite's only connection and
+    // verifies the destination against the source, so rows written alongside it would break either
+    void beginRelocation(String key) {
+        relocating.add(key.toLowerCase(Locale.ROOT));
+    }
+
+    void endRelocation(String key) {
+        relocating.remove(key.toLowerCase(Locale.ROOT));
+    }
+
+    private void ensureNotRelocating(String key) {
+        if (relocating.contains(key.toLowerCase(Locale.ROOT))) {
+            throw new RelocationInProgressException("Relocation into " + key + " in progress");
+        }
+    }
+
+    @PreDestroy
+    void shutdownWriters() {
+        sqliteWriters.values().forEach(ExecutorService::shutdown);
+    }
+
+    private TransactionTemplate tx(String key) {
+        TransactionTemplate tt = txByKey.get(key.toLowerCase(Locale.ROOT));
+        if (tt == null) throw new IllegalArgumentException("Unknown database: " + key);
+        return tt;
+    }
+
     // ============= Sensor Import API =============
     public record SensorMeasurement(
             String device,
             String kind,
             String label,
-            java.sql.Timestamp ts,
+            Timestamp ts,
             String location,
             String metric,
             Double valueNum,
@@ -54,131 +203,946 @@ public class DbService {
             String metaJson
     ) {}
 
-    public record TelemetryRow(
-            java.sql.Timestamp ts,
-            Double servo10_y_deg,
-            Double servo11_x_deg,
-            Double led12_pct,
-            Double led13_pct,
-            Double led14_pct,
-            Double led15_pct,
-            Double temp_c,
-            Double press_hpa,
-            Double hum_perc,
-            Double mag_x,
-            Double mag_y,
-            Double mag_z,
-            Double accel_x,
-            Double accel_y,
-            Double accel_z,
-            Double gyro_x,
-            Double gyro_y,
-            Double gyro_z
-    ) {}
+    /**
+     * Inserts one chunk of telemetry rows as a single JDBC batch in its own transaction,
+     * binding straight from the batch's primitive columns.
+     * Large uploads call this once per chunk (see {@link TelemetryCsvReader}).
+     * After the commit the rows are published to live subscribers ({@link TelemetryStream}).
+     */
+    public int importTelemetry(String dbKey, TelemetryBatch batch) {
+        return importTelemetry(dbKey, batch, null);
+    }
 
-    @Transactional
-    public int importTelemetry(String dbKey, List<TelemetryRow> rows) {
-        if (rows == null || rows.isEmpty()) return 0;
+    /**
+     * Like {@link #importTelemetry(String, TelemetryBatch)}; {@code sameTransaction} runs after the insert in the
+     * same transaction (e.g. to advance a sync checkpoint) and rolls the rows back if it throws.
+     */
+    public int importTelemetry(String dbKey, TelemetryBatch batch, Consumer<JdbcTemplate> sameTransaction) {
+        if (batch == null || batch.isEmpty()) return 0;
         JdbcTemplate jt = jdbc(dbKey);
-        final String sql = "INSERT INTO telemetry (ts, servo10_y_deg, servo11_x_deg, led12_pct, led13_pct, led14_pct, led15_pct, temp_c, press_hpa, hum_perc, mag_x, mag_y, mag_z, accel_x, accel_y, accel_z, gyro_x, gyro_y, gyro_z) " +
-                "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
-        int[][] res = jt.batchUpdate(sql, rows, rows.size(), (ps, r) -> {
-            ps.setTimestamp(1, r.ts());
-            setNullableDouble(ps, 2, r.servo10_y_deg());
-            setNullableDouble(ps, 3, r.servo11_x_deg());
-            setNullableDouble(ps, 4, r.led12_pct());
-            setNullableDouble(ps, 5, r.led13_pct());
-            setNullableDouble(ps, 6, r.led14_pct());
-            setNullableDouble(ps, 7, r.led15_pct());
-            setNullableDouble(ps, 8, r.temp_c());
-            setNullableDouble(ps, 9, r.press_hpa());
-            setNullableDouble(ps, 10, r.hum_perc());
-            setNullableDouble(ps, 11, r.mag_x());
-            setNullableDouble(ps, 12, r.mag_y());
-            setNullableDouble(ps, 13, r.mag_z());
-            setNullableDouble(ps, 14, r.accel_x());
-            setNullableDouble(ps, 15, r.accel_y());
-            setNullableDouble(ps, 16, r.accel_z());
-            setNullableDouble(ps, 17, r.gyro_x());
-            setNullableDouble(ps, 18, r.gyro_y());
-            setNullableDouble(ps, 19, r.gyro_z());
+        ensureNotRelocating(dbKey);
+        metrics.batch(dbKey, "telemetry", batch.size());
+        // includes the wait for the SQLite writer thread
+        Integer inserted = metrics.query(dbKey, "import.telemetry", () -> write(dbKey, () -> tx(dbKey).execute(status -> {
+            int n = insertTelemetry(dbKey, jt, batch);
+            if (hasRollups(dbKey)) {
+                RollupAccumulator rollup = new RollupAccumulator();
+                rollup.addAll(batch);
+                upsertRollups(dbKey, jt, "telemetry_rollup", "col", rollup);
+            }
+            if (sameTransaction != null) sameTransaction.accept(jt);
+            return n;
+        })));
+        // committed: live subscribers see the rows now, never rows that were rolled back
+        if (inserted != null && inserted > 0) stream.publish(dbKey, batch);
+        return inserted == null ? 0 : inserted;
+    }
+
+    private int insertTelemetry(String dbKey, JdbcTemplate jt, TelemetryBatch batch) {
+        return insertRows(dbKey, jt, TELEMETRY_INSERT, 1 + TelemetryBatch.COLUMN_COUNT, batch.size(), (ps, p, row) -> {
+            ps.setTimestamp(p, new Timestamp(batch.epochMillis(row)));
+            for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+                if (batch.isNull(row, c)) ps.setNull(p + 1 + c, java.sql.Types.DOUBLE);
+                else ps.setDouble(p + 1 + c, batch.value(row, c));
+            }
         });
-        int count = 0; 
-        for (int[] arr : res) {
-            if (arr == null) continue;
-            for (int i : arr) count += (i >= 0 ? i : 0);
-        }
-        return count;
     }
 
-    private void setNullableDouble(PreparedStatement ps, int idx, Double v) throws SQLException {
-        if (v == null) ps.setNull(idx, java.sql.Types.DOUBLE); else ps.setDouble(idx, v);
+    /** Binds input row {@code row} to the parameters starting at {@code first}. */
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement ps, int first, int row) throws SQLException;
+    }
+
+    /**
+     * Inserts {@code rows} rows of {@code columns} values. Where the driver does not rewrite JDBC batches itself
+     * (SQLite), rows go out as multi-row {@code VALUES (…),(…)} statements of {@link SqlDialect#rowsPerInsert};
+     * otherwise as one JDBC batch.
+     */
+    private int insertRows(String dbKey, JdbcTemplate jt, String insertHead, int columns, int rows, RowBinder binder) {
+        String tuple = "(" + placeholders(columns) + ")";
+        int perInsert = Math.min(rows, dialect(dbKey).rowsPerInsert(columns));
+        if (perInsert <= 1) {
+            int[] res = jt.batchUpdate(insertHead + tuple, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int row) throws SQLException {
+                    binder.bind(ps, 1, row);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return rows;
+                }
+            });
+            return countUpdates(res);
+        }
+        Integer inserted = jt.execute((java.sql.Connection con) -> {
+            int n = 0;
+            int row = 0;
+            // one statement for all full chunks, one for the remainder
+            while (row < rows) {
+                int size = Math.min(perInsert, rows - row);
+                try (PreparedStatement ps = con.prepareStatement(insertHead + String.join(",", Collections.nCopies(size, tuple)))) {
+                    do {
+                        for (int r = 0; r < size; r++) binder.bind(ps, r * columns + 1, row + r);
+                        n += ps.executeUpdate();
+                        row += size;
+                    } while (rows - row >= size);
+                }
+            }
+            return n;
+        });
+        return inserted == null ? 0 : inserted;
     }
 
-    @Transactional
+    /**
+     * Imports measurements in one transaction: devices and sensors come from the shared {@link IdCache}
+     * or are resolved in bulk, then the rows are written as JDBC batches of {@value #MEASUREMENT_BATCH_SIZE}
+     * and folded into {@code measurement_rollup}.
+     */
     public int importMeasurements(String dbKey, List<SensorMeasurement> rows) {
+        return importMeasurements(dbKey, rows, null);
+    }
+
+    /** Like {@link #importMeasurements(String, List)}, with extra work in the same transaction. */
+    public int importMeasurements(String dbKey, List<SensorMeasurement> rows, Consumer<JdbcTemplate> sameTransaction) {
         if (rows == null || rows.isEmpty()) return 0;
         JdbcTemplate jt = jdbc(dbKey);
-        Map<String, Long> deviceCache = new HashMap<>();
-        Map<String, Long> sensorCache = new HashMap<>();
-        int inserted = 0;
+        ensureNotRelocating(dbKey);
+        Map<Object, Long> resolved = new HashMap<>();
+        metrics.batch(dbKey, "measurements", rows.size());
+        try {
+            Integer inserted = metrics.query(dbKey, "import.measurements", () -> write(dbKey, () -> tx(dbKey).execute(status -> {
+                int n = insertMeasurements(dbKey, jt, rows, resolved);
+                if (sameTransaction != null) sameTransaction.accept(jt);
+                return n;
+            })));
+            // only committed ids go into the shared cache
+            idCache.putAll(dbKey, resolved);
+            return inserted == null ? 0 : inserted;
+        } catch (DataAccessException e) {
+            // a cached id may point at a device/sensor that no longer exists
+            idCache.invalidateAll(dbKey);
+            throw e;
+        }
+    }
+
+    private int insertMeasurements(String dbKey, JdbcTemplate jt, List<SensorMeasurement> rows,
+                                   Map<Object, Long> resolved) {
+        Set<String> deviceNames = new LinkedHashSet<>();
         for (SensorMeasurement r : rows) {
-            long deviceId = deviceCache.computeIfAbsent(r.device(), name -> ensureDevice(jt, name));
-            String sensorKey = deviceId + "|" + (r.kind() == null ? "" : r.kind()) + "|" + (r.label() == null ? "" : r.label());
-            long sensorId = sensorCache.computeIfAbsent(sensorKey, k -> ensureSensor(jt, deviceId, r.kind(), r.label()));
-            inserted += insertMeasurement(jt, sensorId, r);
+            if (!StringUtils.hasText(r.device())) throw new IllegalArgumentException("device name required");
+            deviceNames.add(r.device());
+        }
+        Map<String, Long> deviceIds = resolveDevices(dbKey, jt, deviceNames, resolved);
+
+        Set<SensorKey> sensorKeys = new LinkedHashSet<>();
+        long[] sensorOfRow = new long[rows.size()];
+        for (SensorMeasurement r : rows) sensorKeys.add(SensorKey.of(deviceIds.get(r.device()), r.kind(), r.label()));
+        Map<SensorKey, Long> sensorIds = resolveSensors(dbKey, jt, sensorKeys, resolved);
+        for (int i = 0; i < sensorOfRow.length; i++) {
+            SensorMeasurement r = rows.get(i);
+            sensorOfRow[i] = sensorIds.get(SensorKey.of(deviceIds.get(r.device()), r.kind(), r.label()));
+        }
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int inserted = 0;
+        for (int from = 0; from < rows.size(); from += MEASUREMENT_BATCH_SIZE) {
+            int offset = from;
+            int size = Math.min(MEASUREMENT_BATCH_SIZE, rows.size() - from);
+            inserted += insertRows(dbKey, jt, MEASUREMENT_INSERT, MEASUREMENT_COLUMNS, size, (ps, p, i) -> {
+                SensorMeasurement r = rows.get(offset + i);
+                ps.setLong(p, sensorOfRow[offset + i]);
+                ps.setTimestamp(p + 1, r.ts() != null ? r.ts() : now);
+                if (StringUtils.hasText(r.location())) ps.setString(p + 2, r.location()); else ps.setNull(p + 2, java.sql.Types.VARCHAR);
+                ps.setString(p + 3, r.metric());
+                if (r.valueNum() != null) ps.setDouble(p + 4, r.valueNum()); else ps.setNull(p + 4, java.sql.Types.DOUBLE);
+                if (r.valueBool() != null) ps.setInt(p + 5, r.valueBool()); else ps.setNull(p + 5, java.sql.Types.INTEGER);
+                if (StringUtils.hasText(r.valueText())) ps.setString(p + 6, r.valueText()); else ps.setNull(p + 6, java.sql.Types.VARCHAR);
+                if (StringUtils.hasText(r.unit())) ps.setString(p + 7, r.unit()); else ps.setNull(p + 7, java.sql.Types.VARCHAR);
+                if (StringUtils.hasText(r.metaJson())) ps.setString(p + 8, r.metaJson()); else ps.setNull(p + 8, java.sql.Types.VARCHAR);
+            });
+        }
+        if (hasRollups(dbKey)) {
+            RollupAccumulator rollup = new RollupAccumulator();
+            for (SensorMeasurement r : rows) {
+                if (r.valueNum() != null) rollup.add(r.metric(), (r.ts() != null ? r.ts() : now).getTime(), r.valueNum());
+            }
+            upsertRollups(dbKey, jt, "measurement_rollup", "metric", rollup);
         }
         return inserted;
     }
 
-    private long ensureDevice(JdbcTemplate jt, String name) {
-        if (!StringUtils.hasText(name)) throw new IllegalArgumentException("device name required");
-        List<Long> ids = jt.query("SELECT id FROM devices WHERE name = ?", (rs, i) -> rs.getLong(1), name);
-        if (!ids.isEmpty()) return ids.get(0);
-        // insert
-        jt.update(con -> {
-            PreparedStatement ps = con.prepareStatement("INSERT INTO devices (name) VALUES (?)");
-            ps.setString(1, name);
-            return ps;
+    /** A sensor of another target, identified by device name, kind and label. */
+    public record SensorRef(String device, String kind, String label) {}
+
+    /**
+     * Registers devices and sensors of another target here, matched by name and (kind, label) like imports.
+     *
+     * @return local sensor id for each key of {@code sensors} (e.g. the source's sensor id)
+     */
+    public Map<Long, Long> registerSensors(String dbKey, Collection<String> devices, Map<Long, SensorRef> sensors) {
+        JdbcTemplate jt = jdbc(dbKey);
+        Map<Object, Long> resolved = new HashMap<>();
+        Map<Long, Long> ids = write(dbKey, () -> tx(dbKey).execute(status -> {
+            Set<String> names = new LinkedHashSet<>(devices);
+            sensors.values().forEach(s -> names.add(s.device()));
+            Map<String, Long> deviceIds = resolveDevices(dbKey, jt, names, resolved);
+            Set<SensorKey> keys = new LinkedHashSet<>();
+            for (SensorRef s : sensors.values()) keys.add(SensorKey.of(deviceIds.get(s.device()), s.kind(), s.label()));
+            Map<SensorKey, Long> sensorIds = resolveSensors(dbKey, jt, keys, resolved);
+            Map<Long, Long> out = new HashMap<>();
+            sensors.forEach((id, s) -> out.put(id, sensorIds.get(SensorKey.of(deviceIds.get(s.device()), s.kind(), s.label()))));
+            return out;
+        }));
+        idCache.putAll(dbKey, resolved);
+        return ids;
+    }
+
+    // Sensor identity, the unique key of sensors; blank labels are stored as ''
+    private record SensorKey(long deviceId, String kind, String label) {
+        static SensorKey of(long deviceId, String kind, String label) {
+            return new SensorKey(deviceId, kind == null ? "" : kind, StringUtils.hasText(label) ? label : "");
+        }
+    }
+
+    /**
+     * Ids of devices by name: from the cache, else one indexed SELECT per chunk, and the rest upserted on
+     * the unique name. Concurrent imports registering the same name both end up with the same id.
+     */
+    private Map<String, Long> resolveDevices(String dbKey, JdbcTemplate jt, Collection<String> names,
+                                             Map<Object, Long> resolved) {
+        SqlDialect dialect = dialect(dbKey);
+        Map<String, Long> ids = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String n : names) {
+            Long id = idCache.get(dbKey, n);
+            if (id != null) ids.put(n, id); else unknown.add(n);
+        }
+        String upsert = dialect.onConflictKeepId("name", "name");
+        for (int from = 0; from < unknown.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = unknown.subList(from, Math.min(unknown.size(), from + LOOKUP_CHUNK_SIZE));
+            jt.query("SELECT id, name FROM devices WHERE name IN (" + placeholders(chunk.size()) + ")",
+                    rs -> { ids.put(rs.getString(2), rs.getLong(1)); }, chunk.toArray());
+            List<String> missing = chunk.stream().filter(n -> !ids.containsKey(n)).toList();
+            if (missing.isEmpty()) continue;
+            if (dialect.supportsReturning()) {
+                jt.query("INSERT INTO devices (name) VALUES " + String.join(",", Collections.nCopies(missing.size(), "(?)"))
+                                + upsert + " RETURNING id, name",
+                        rs -> { ids.put(rs.getString(2), rs.getLong(1)); }, missing.toArray());
+            } else {
+                upsertEach(jt, "INSERT INTO devices (name) VALUES (?)" + upsert,
+                        missing.stream().map(n -> new Object[] {n}).toList(), (row, id) -> ids.put((String) row[0], id));
+            }
+        }
+        for (String n : unknown) {
+            Long id = ids.get(n);
+            if (id == null) throw new IllegalStateException("Device could not be registered: " + n);
+            resolved.put(n, id);
+        }
+        return ids;
+    }
+
+    /** Like {@link #resolveDevices}, on the unique key (device_id, kind, label). */
+    private Map<SensorKey, Long> resolveSensors(String dbKey, JdbcTemplate jt, Collection<SensorKey> keys,
+                                                Map<Object, Long> resolved) {
+        SqlDialect dialect = dialect(dbKey);
+        Map<SensorKey, Long> ids = new HashMap<>();
+        List<SensorKey> unknown = new ArrayList<>();
+        for (SensorKey k : keys) {
+            Long id = idCache.get(dbKey, k);
+            if (id != null) ids.put(k, id); else unknown.add(k);
+        }
+        if (unknown.isEmpty()) return ids;
+        List<Long> deviceIds = unknown.stream().map(SensorKey::deviceId).distinct().toList();
+        for (int from = 0; from < deviceIds.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = deviceIds.subList(from, Math.min(deviceIds.size(), from + LOOKUP_CHUNK_SIZE));
+            // prefix of the unique key
+            jt.query("SELECT id, device_id, kind, label FROM sensors WHERE device_id IN (" + placeholders(chunk.size()) + ")",
+                    rs -> { ids.put(SensorKey.of(rs.getLong(2), rs.getString(3), rs.getString(4)), rs.getLong(1)); },
+                    chunk.toArray());
+        }
+        List<SensorKey> missing = unknown.stream().filter(k -> !ids.containsKey(k)).toList();
+        String upsert = dialect.onConflictKeepId("device_id, kind, label", "kind");
+        for (int from = 0; from < missing.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<SensorKey> chunk = missing.subList(from, Math.min(missing.size(), from + LOOKUP_CHUNK_SIZE));
+            if (dialect.supportsReturning()) {
+                Object[] args = new Object[chunk.size() * 3];
+                for (int i = 0; i < chunk.size(); i++) {
+                    SensorKey k = chunk.get(i);
+                    args[i * 3] = k.deviceId();
+                    args[i * 3 + 1] = k.kind();
+                    args[i * 3 + 2] = k.label();
+                }
+                jt.query("INSERT INTO sensors (device_id, kind, label) VALUES "
+                                + String.join(",", Collections.nCopies(chunk.size(), "(?,?,?)")) + upsert
+                                + " RETURNING id, device_id, kind, label",
+                        rs -> { ids.put(SensorKey.of(rs.getLong(2), rs.getString(3), rs.getString(4)), rs.getLong(1)); }, args);
+            } else {
+                List<Object[]> rows = chunk.stream().map(k -> new Object[] {k.deviceId(), k.kind(), k.label()}).toList();
+                upsertEach(jt, "INSERT INTO sensors (device_id, kind, label) VALUES (?,?,?)" + upsert, rows,
+                        (row, id) -> ids.put(SensorKey.of((Long) row[0], (String) row[1], (String) row[2]), id));
+            }
+        }
+        for (SensorKey k : unknown) {
+            Long id = ids.get(k);
+            if (id == null) throw new IllegalStateException("Sensor could not be registered: " + k);
+            resolved.put(k, id);
+        }
+        return ids;
+    }
+
+    // One single-row upsert per row, its id read as generated key (no RETURNING, see SqlDialect#onConflictKeepId)
+    private static void upsertEach(JdbcTemplate jt, String sql, List<Object[]> rows, BiConsumer<Object[], Long> onId) {
+        jt.execute((java.sql.Connection con) -> {
+            try (PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) ps.setObject(i + 1, row[i]);
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (!keys.next()) throw new SQLException("No id returned for " + Arrays.toString(row));
+                        onId.accept(row, keys.getLong(1));
+                    }
+                }
+            }
+            return null;
         });
-        return jt.queryForObject("SELECT id FROM devices WHERE name = ?", Long.class, name);
-    }
-
-    private long ensureSensor(JdbcTemplate jt, long deviceId, String kind, String label) {
-        List<Long> ids = jt.query(
-                "SELECT id FROM sensors WHERE device_id = ? AND kind = ? AND COALESCE(label,'') = COALESCE(?, '')",
-                (rs, i) -> rs.getLong(1), deviceId, kind, label);
-        if (!ids.isEmpty()) return ids.get(0);
-        jt.update(con -> {
-            PreparedStatement ps = con.prepareStatement("INSERT INTO sensors (device_id, kind, label) VALUES (?, ?, ?)");
-            ps.setLong(1, deviceId);
-            ps.setString(2, kind);
-            if (label == null || label.isBlank()) ps.setNull(3, java.sql.Types.VARCHAR); else ps.setString(3, label);
-            return ps;
+    }
+
+    /** The SQL dialect of a target. */
+    public SqlDialect dialect(String dbKey) {
+        SqlDialect dialect = dialects.get(dbKey.toLowerCase(Locale.ROOT));
+        if (dialect == null) throw new IllegalArgumentException("Unknown database: " + dbKey);
+        return dialect;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+
+    // Drivers with rewritten batches (rewriteBatchedStatements) report SUCCESS_NO_INFO per row
+    private static int countUpdates(int[] res) {
+        int count = 0;
+        for (int i : res) count += i >= 0 ? i : (i == Statement.SUCCESS_NO_INFO ? 1 : 0);
+        return count;
+    }
+
+    // ============= Telemetry query API =============
+
+    /** Numeric condition on a telemetry column, e.g. {@code temp_c > 20}. */
+    public record Condition(String column, String op, double value) {}
+
+    /**
+     * Keyset-paginated telemetry query, newest rows first.
+     *
+     * @param columns projected metric columns (empty = all); {@code id} and {@code ts} are always included
+     * @param orderByTs order by {@code (ts, id)} instead of {@code id}; uses {@code idx_telemetry_ts}
+     * @param cursor    {@code nextCursor} of the previous page, or null for the first page
+     */
+    public record TelemetryQuery(Long fromMillis, Long toMillis, List<String> columns, List<Condition> conditions,
+                                 boolean orderByTs, String cursor, int limit) {}
+
+    public record TelemetryPage(List<TelemetryRecord> rows, String nextCursor) {}
+
+    private static final Set<String> CONDITION_OPS = Set.of("=", "!=", "<", "<=", ">", ">=");
+
+    /**
+     * Runs one page of a {@link TelemetryQuery}. The cursor carries the last key of the previous page,
+     * so every page is a bounded index range scan and deep pages cost the same as the first one.
+     */
+    public TelemetryPage telemetryPage(String dbKey, TelemetryQuery q) {
+        return metrics.query(dbKey, "data", () -> readTelemetryPage(dbKey, q));
+    }
+
+    private TelemetryPage readTelemetryPage(String dbKey, TelemetryQuery q) {
+        int[] cols = q.columns() == null || q.columns().isEmpty()
+                ? IntStream.range(0, TelemetryBatch.COLUMN_COUNT).toArray()
+                : q.columns().stream().mapToInt(c -> {
+                    int i = TelemetryBatch.columnIndex(c);
+                    if (i < 0) throw new IllegalArgumentException("Unknown column: " + c);
+                    return i;
+                }).toArray();
+        StringBuilder sql = new StringBuilder("SELECT id, ts");
+        for (int c : cols) sql.append(", ").append(TelemetryBatch.COLUMNS.get(c));
+        sql.append(" FROM telemetry WHERE 1=1");
+        List<Object> args = new ArrayList<>();
+        appendTimeRange(sql, args, q.fromMillis(), q.toMillis());
+        for (Condition c : q.conditions() == null ? List.<Condition>of() : q.conditions()) {
+            if (TelemetryBatch.columnIndex(c.column()) < 0) throw new IllegalArgumentException("Unknown column: " + c.column());
+            if (!CONDITION_OPS.contains(c.op())) throw new IllegalArgumentException("Unknown operator: " + c.op());
+            sql.append(" AND ").append(c.column()).append(' ').append(c.op()).append(" ?");
+            args.add(c.value());
+        }
+        if (q.cursor() != null && !q.cursor().isBlank()) {
+            long[] key = parseCursor(q.cursor(), q.orderByTs());
+            if (q.orderByTs()) {
+                sql.append(" AND (ts < ? OR (ts = ? AND id < ?))");
+                Timestamp ts = new Timestamp(key[0]);
+                args.add(ts);
+                args.add(ts);
+                args.add(key[1]);
+            } else {
+                sql.append(" AND id < ?");
+                args.add(key[0]);
+            }
+        }
+        sql.append(q.orderByTs() ? " ORDER BY ts DESC, id DESC" : " ORDER BY id DESC").append(" LIMIT ?");
+        int limit = q.limit();
+        args.add(limit + 1); // one extra row tells whether there is a next page
+
+        List<TelemetryRecord> rows = reader(dbKey).query(sql.toString(), (rs, i) -> {
+            double[] values = new double[cols.length];
+            for (int c = 0; c < cols.length; c++) {
+                values[c] = rs.getDouble(c + 3);
+                if (rs.wasNull()) values[c] = Double.NaN;
+            }
+            Timestamp ts = rs.getTimestamp(2);
+            return new TelemetryRecord(rs.getLong(1), ts == null ? 0 : ts.getTime(), cols, values);
+        }, args.toArray());
+
+        String next = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            TelemetryRecord last = rows.get(limit - 1);
+            next = q.orderByTs() ? "ts:" + last.tsMillis() + ":" + last.id() : "id:" + last.id();
+        }
+        return new TelemetryPage(rows, next);
+    }
+
+    private static long[] parseCursor(String cursor, boolean orderByTs) {
+        String[] parts = cursor.split(":");
+        try {
+            if (orderByTs && parts.length == 3 && parts[0].equals("ts")) {
+                return new long[] { Long.parseLong(parts[1]), Long.parseLong(parts[2]) };
+            }
+            if (!orderByTs && parts.length == 2 && parts[0].equals("id")) {
+                return new long[] { Long.parseLong(parts[1]) };
+            }
+        } catch (NumberFormatException ignored) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    // ============= Aggregation =============
+
+    /** Bucket widths an automatic resolution snaps to, so buckets stay aligned to wall-clock units. */
+    private static final long[] BUCKET_STEPS = {
+            1_000L, 5_000L, 10_000L, 30_000L, 60_000L, 300_000L, 600_000L, 900_000L, 1_800_000L,
+            3_600_000L, 10_800_000L, 21_600_000L, 43_200_000L, 86_400_000L, 604_800_000L };
+
+    /**
+     * Time-bucket aggregation over {@code telemetry} columns or {@code measurements} metrics.
+     *
+     * @param series       telemetry column names, or metric names for {@code measurements}
+     * @param bucketMillis fixed bucket width, or 0 to derive it from the time range and {@code maxPoints}
+     */
+    public record AggregateQuery(String table, List<String> series, Long fromMillis, Long toMillis,
+                                 long bucketMillis, int maxPoints) {}
+
+    /**
+     * Computes count/min/max/avg/last per bucket. When the bucket width and range line up with a rollup
+     * resolution, the coarsest matching rollup table is read; otherwise one GROUP BY runs over the raw rows,
+     * plus one lookup of the rows at the newest ts for the {@code last} values. Either way {@code last} is the
+     * value with the newest ts (ties: the later insert), whatever order the rows arrived in.
+     */
+    public AggregateResponse aggregate(String dbKey, AggregateQuery q) {
+        return metrics.query(dbKey, "aggregate", () -> computeAggregate(dbKey, q));
+    }
+
+    private AggregateResponse computeAggregate(String dbKey, AggregateQuery q) {
+        boolean telemetry = switch (q.table()) {
+            case "telemetry" -> true;
+            case "measurements" -> false;
+            default -> throw new IllegalArgumentException("Unsupported table: " + q.table());
+        };
+        List<String> series = q.series() == null ? List.of() : q.series();
+        if (telemetry) {
+            if (series.isEmpty()) series = TelemetryBatch.COLUMNS;
+            for (String c : series) {
+                if (TelemetryBatch.columnIndex(c) < 0) throw new IllegalArgumentException("Unknown column: " + c);
+            }
+        } else if (series.isEmpty()) {
+            throw new IllegalArgumentException("Missing metric");
+        }
+        long bucket = q.bucketMillis() > 0 ? q.bucketMillis() : autoBucket(dbKey, q, series);
+        long res = rollupResolution(dbKey, q.fromMillis(), q.toMillis(), bucket);
+        List<AggregateResponse.Series> out;
+        if (res > 0) {
+            out = aggregateRollup(dbKey, telemetry ? "telemetry_rollup" : "measurement_rollup",
+                    telemetry ? "col" : "metric", series, q.fromMillis(), q.toMillis(), res, bucket);
+        } else {
+            out = telemetry
+                    ? aggregateTelemetry(dbKey, series, q.fromMillis(), q.toMillis(), bucket)
+                    : aggregateMeasurements(dbKey, series, q.fromMillis(), q.toMillis(), bucket);
+        }
+        String source = res == 0 ? "raw" : res == 86_400_000L ? "rollup:1d" : res == 3_600_000L ? "rollup:1h" : "rollup:1m";
+        return new AggregateResponse(dbKey.toLowerCase(Locale.ROOT), q.table(), bucket, source, out);
+    }
+
+    private List<AggregateResponse.Series> aggregateTelemetry(String dbKey, List<String> columns,
+                                                              Long fromMillis, Long toMillis, long bucket) {
+        JdbcTemplate jt = reader(dbKey);
+        StringBuilder sql = new StringBuilder("SELECT ").append(bucketExpr(dbKey)).append(" AS b");
+        for (String c : columns) {
+            sql.append(", COUNT(").append(c).append("), MIN(").append(c).append("), MAX(").append(c)
+                    .append("), AVG(").append(c).append("), MAX(CASE WHEN ").append(c).append(" IS NOT NULL THEN ts END)");
+        }
+        sql.append(" FROM telemetry WHERE 1=1");
+        List<Object> args = new ArrayList<>();
+        args.add(bucket);
+        appendTimeRange(sql, args, fromMillis, toMillis);
+        sql.append(" GROUP BY b ORDER BY b");
+
+        int n = columns.size();
+        List<List<AggregateResponse.Bucket>> buckets = new ArrayList<>();
+        for (int c = 0; c < n; c++) buckets.add(new ArrayList<>());
+        List<long[]> lastTsPerBucket = new ArrayList<>();
+        jt.query(sql.toString(), rs -> {
+            long start = rs.getLong(1) * bucket;
+            long[] lastTs = new long[n];
+            for (int c = 0; c < n; c++) {
+                int base = 2 + c * 5;
+                long count = rs.getLong(base);
+                Timestamp ts = count == 0 ? null : rs.getTimestamp(base + 4);
+                lastTs[c] = ts == null ? Long.MIN_VALUE : ts.getTime();
+                if (count > 0) {
+                    buckets.get(c).add(new AggregateResponse.Bucket(start, count,
+                            rs.getDouble(base + 1), rs.getDouble(base + 2), rs.getDouble(base + 3), null));
+                }
+            }
+            lastTsPerBucket.add(lastTs);
+        }, args.toArray());
+
+        // last value per column and bucket: the rows at the newest ts, of which the highest id wins
+        Set<Long> stamps = new HashSet<>();
+        for (long[] row : lastTsPerBucket) for (long ts : row) if (ts != Long.MIN_VALUE) stamps.add(ts);
+        Map<Long, double[]> lastByTs = new HashMap<>();
+        String cols = String.join(", ", columns);
+        List<Long> tsList = new ArrayList<>(stamps);
+        for (int i = 0; i < tsList.size(); i += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = tsList.subList(i, Math.min(tsList.size(), i + LOOKUP_CHUNK_SIZE));
+            jt.query("SELECT ts, " + cols + " FROM telemetry WHERE ts IN (" + placeholders(chunk.size())
+                    + ") ORDER BY id", rs -> {
+                double[] last = lastByTs.computeIfAbsent(rs.getTimestamp(1).getTime(), k -> {
+                    double[] v = new double[n];
+                    Arrays.fill(v, Double.NaN);
+                    return v;
+                });
+                for (int c = 0; c < n; c++) {
+                    double v = rs.getDouble(c + 2);
+                    if (!rs.wasNull()) last[c] = v;
+                }
+            }, chunk.stream().map(Timestamp::new).toArray());
+        }
+
+        List<AggregateResponse.Series> out = new ArrayList<>(n);
+        for (int c = 0; c < n; c++) {
+            List<AggregateResponse.Bucket> withLast = new ArrayList<>(buckets.get(c).size());
+            int k = 0;
+            for (long[] lastTs : lastTsPerBucket) {
+                if (lastTs[c] == Long.MIN_VALUE) continue;
+                AggregateResponse.Bucket a = buckets.get(c).get(k++);
+                double[] v = lastByTs.get(lastTs[c]);
+                Double last = v == null || Double.isNaN(v[c]) ? null : v[c];
+                withLast.add(new AggregateResponse.Bucket(a.ts(), a.count(), a.min(), a.max(), a.avg(), last));
+            }
+            out.add(new AggregateResponse.Series(columns.get(c), withLast));
+        }
+        return out;
+    }
+
+    private List<AggregateResponse.Series> aggregateMeasurements(String dbKey, List<String> metrics,
+                                                                 Long fromMillis, Long toMillis, long bucket) {
+        JdbcTemplate jt = reader(dbKey);
+        StringBuilder sql = new StringBuilder("SELECT metric, ").append(bucketExpr(dbKey))
+                .append(" AS b, COUNT(value_num), MIN(value_num), MAX(value_num), AVG(value_num), MAX(ts)")
+                .append(" FROM measurements WHERE value_num IS NOT NULL AND metric IN (")
+                .append(placeholders(metrics.size())).append(')');
+        List<Object> args = new ArrayList<>();
+        args.add(bucket);
+        args.addAll(metrics);
+        appendTimeRange(sql, args, fromMillis, toMillis);
+        sql.append(" GROUP BY metric, b ORDER BY metric, b");
+
+        Map<String, List<AggregateResponse.Bucket>> byMetric = new LinkedHashMap<>();
+        Map<String, List<Long>> lastTs = new HashMap<>();
+        for (String m : metrics) {
+            byMetric.put(m, new ArrayList<>());
+            lastTs.put(m, new ArrayList<>());
+        }
+        jt.query(sql.toString(), rs -> {
+            String metric = rs.getString(1);
+            byMetric.computeIfAbsent(metric, k -> new ArrayList<>()).add(new AggregateResponse.Bucket(rs.getLong(2) * bucket, rs.getLong(3),
+                    rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), null));
+            lastTs.computeIfAbsent(metric, k -> new ArrayList<>()).add(rs.getTimestamp(7).getTime());
+        }, args.toArray());
+
+        // the rows of a metric at the newest ts of its bucket; the highest id wins
+        List<Long> tsList = lastTs.values().stream().flatMap(List::stream).distinct().toList();
+        Map<String, Double> values = new HashMap<>();
+        for (int i = 0; i < tsList.size(); i += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = tsList.subList(i, Math.min(tsList.size(), i + LOOKUP_CHUNK_SIZE));
+            List<Object> lookupArgs = new ArrayList<>(metrics);
+            chunk.forEach(ts -> lookupArgs.add(new Timestamp(ts)));
+            jt.query("SELECT metric, ts, value_num FROM measurements WHERE value_num IS NOT NULL AND metric IN ("
+                            + placeholders(metrics.size()) + ") AND ts IN (" + placeholders(chunk.size()) + ") ORDER BY id",
+                    rs -> {
+                        values.put(rs.getString(1) + '@' + rs.getTimestamp(2).getTime(), rs.getDouble(3));
+                    }, lookupArgs.toArray());
+        }
+
+        List<AggregateResponse.Series> out = new ArrayList<>(metrics.size());
+        for (var e : byMetric.entrySet()) {
+            List<Long> stamps = lastTs.get(e.getKey());
+            List<AggregateResponse.Bucket> withLast = new ArrayList<>(e.getValue().size());
+            for (int i = 0; i < stamps.size(); i++) {
+                AggregateResponse.Bucket a = e.getValue().get(i);
+                withLast.add(new AggregateResponse.Bucket(a.ts(), a.count(), a.min(), a.max(), a.avg(),
+                        values.get(e.getKey() + '@' + stamps.get(i))));
+            }
+            out.add(new AggregateResponse.Series(e.getKey(), withLast));
+        }
+        return out;
+    }
+
+    // Integer bucket number of ts; the bucket width is the first bind parameter
+    private String bucketExpr(String dbKey) {
+        return dialect(dbKey).bucketExpr("ts");
+    }
+
+    // Smallest aligned step that keeps the range within maxPoints buckets
+    private long autoBucket(String dbKey, AggregateQuery q, List<String> series) {
+        Long from = q.fromMillis();
+        Long to = q.toMillis();
+        if (from == null || to == null) {
+            StringBuilder sql = new StringBuilder("SELECT MIN(ts), MAX(ts) FROM ").append(q.table()).append(" WHERE 1=1");
+            List<Object> args = new ArrayList<>();
+            if (q.table().equals("measurements")) {
+                sql.append(" AND metric IN (").append(placeholders(series.size())).append(')');
+                args.addAll(series);
+            }
+            appendTimeRange(sql, args, from, to);
+            long[] range = reader(dbKey).query(sql.toString(), rs -> {
+                rs.next();
+                Timestamp min = rs.getTimestamp(1);
+                Timestamp max = rs.getTimestamp(2);
+                return min == null ? null : new long[] { min.getTime(), max.getTime() + 1 };
+            }, args.toArray());
+            if (range == null) return BUCKET_STEPS[0];
+            if (from == null) from = range[0];
+            if (to == null) to = range[1];
+        }
+        long wanted = (Math.max(0, to - from) + q.maxPoints() - 1) / Math.max(1, q.maxPoints());
+        for (long step : BUCKET_STEPS) {
+            if (step >= wanted) return step;
+        }
+        long week = BUCKET_STEPS[BUCKET_STEPS.length - 1];
+        return (wanted + week - 1) / week * week;
+    }
+
+    // ============= Rollups =============
+
+    public record RollupRebuild(String db, long telemetryRows, long measurementRows) {}
+
+    /**
+     * Whether the rollup tables exist on a target. MySQL targets only get them when schema-mysql.sql
+     * was applied; without them imports skip the rollup upsert and aggregations read the raw tables.
+     */
+    private boolean hasRollups(String dbKey) {
+        String key = dbKey.toLowerCase(Locale.ROOT);
+        Boolean known = rollupTables.get(key);
+        if (known != null) return known;
+        Boolean present = jdbc(dbKey).execute((java.sql.Connection con) -> {
+            java.sql.DatabaseMetaData md = con.getMetaData();
+            for (String table : List.of("telemetry_rollup", "measurement_rollup")) {
+                try (ResultSet rs = md.getTables(con.getCatalog(), null, table, null)) {
+                    if (!rs.next()) return false;
+                }
+            }
+            return true;
         });
-        return jt.queryForObject(
-                "SELECT id FROM sensors WHERE device_id = ? AND kind = ? AND COALESCE(label,'') = COALESCE(?, '')",
-                Long.class, deviceId, kind, label);
-    }
-
-    private int insertMeasurement(JdbcTemplate jt, long sensorId, SensorMeasurement r) {
-        return jt.update(con -> {
-            PreparedStatement ps = con.prepareStatement(
-                    "INSERT INTO measurements (sensor_id, ts, location, metric, value_num, value_bool, value_text, unit, meta_json) " +
-                            "VALUES (?,?,?,?,?,?,?,?,?)");
-            ps.setLong(1, sensorId);
-            if (r.ts() != null) ps.setTimestamp(2, r.ts()); else ps.setTimestamp(2, new java.sql.Timestamp(System.currentTimeMillis()));
-            if (StringUtils.hasText(r.location())) ps.setString(3, r.location()); else ps.setNull(3, java.sql.Types.VARCHAR);
-            ps.setString(4, r.metric());
-            if (r.valueNum() != null) ps.setDouble(5, r.valueNum()); else ps.setNull(5, java.sql.Types.DOUBLE);
-            if (r.valueBool() != null) ps.setInt(6, r.valueBool()); else ps.setNull(6, java.sql.Types.INTEGER);
-            if (StringUtils.hasText(r.valueText())) ps.setString(7, r.valueText()); else ps.setNull(7, java.sql.Types.VARCHAR);
-            if (StringUtils.hasText(r.unit())) ps.setString(8, r.unit()); else ps.setNull(8, java.sql.Types.VARCHAR);
-            if (StringUtils.hasText(r.metaJson())) ps.setString(9, r.metaJson()); else ps.setNull(9, java.sql.Types.VARCHAR);
-            return ps;
+        rollupTables.put(key, Boolean.TRUE.equals(present));
+        return Boolean.TRUE.equals(present);
+    }
+
+    // Adds the accumulated buckets to existing rollup rows; runs inside the import transaction
+    private void upsertRollups(String dbKey, JdbcTemplate jt, String table, String nameColumn, RollupAccumulator rollup) {
+        if (rollup.isEmpty()) return;
+        String insert = "INSERT INTO " + table + " (res, " + nameColumn
+                + ", bucket_ts, cnt, sum_val, min_val, max_val, last_ts, last_val) VALUES (?,?,?,?,?,?,?,?,?)";
+        SqlDialect d = dialect(dbKey);
+        // last_val is assigned before last_ts: MySQL evaluates the assignments left to right
+        String sql = insert + d.onConflictUpdate("res, " + nameColumn + ", bucket_ts")
+                + "cnt = cnt + " + d.excluded("cnt") + ", sum_val = sum_val + " + d.excluded("sum_val")
+                + ", min_val = " + d.least("min_val", d.excluded("min_val"))
+                + ", max_val = " + d.greatest("max_val", d.excluded("max_val"))
+                + ", last_val = CASE WHEN " + d.excluded("last_ts") + " >= last_ts THEN " + d.excluded("last_val")
+                + " ELSE last_val END, last_ts = " + d.greatest("last_ts", d.excluded("last_ts"));
+        List<RollupAccumulator.Entry> entries = rollup.entries();
+        jt.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                RollupAccumulator.Entry e = entries.get(i);
+                ps.setLong(1, e.res);
+                ps.setString(2, e.name);
+                ps.setLong(3, e.bucketTs);
+                ps.setLong(4, e.count);
+                ps.setDouble(5, e.sum);
+                ps.setDouble(6, e.min);
+                ps.setDouble(7, e.max);
+                ps.setLong(8, e.lastTs);
+                ps.setDouble(9, e.lastValue);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
         });
     }
 
+    /**
+     * Recomputes both rollup tables from the raw rows, e.g. after the tables were added to a target
+     * that already holds data. Reads the raw tables in id-ordered pages and runs in one transaction;
+     * meant to be run while no import is writing to the target.
+     */
+    public RollupRebuild rebuildRollups(String dbKey) {
+        JdbcTemplate jt = jdbc(dbKey);
+        if (!hasRollups(dbKey)) throw new IllegalStateException("Rollup tables missing on " + dbKey);
+        long[] counts = write(dbKey, () -> tx(dbKey).execute(status -> {
+            jt.update("DELETE FROM telemetry_rollup");
+            jt.update("DELETE FROM measurement_rollup");
+            long telemetry = rebuildTelemetryRollup(dbKey, jt);
+            long measurements = rebuildMeasurementRollup(dbKey, jt);
+            return new long[] { telemetry, measurements };
+        }));
+        return new RollupRebuild(dbKey.toLowerCase(Locale.ROOT), counts[0], counts[1]);
+    }
+
+    private long rebuildTelemetryRollup(String dbKey, JdbcTemplate jt) {
+        String sql = "SELECT id, ts, " + String.join(", ", TelemetryBatch.COLUMNS)
+                + " FROM telemetry WHERE id > ? ORDER BY id LIMIT " + ROLLUP_REBUILD_PAGE;
+        TelemetryBatch batch = new TelemetryBatch(ROLLUP_REBUILD_PAGE);
+        RollupAccumulator rollup = new RollupAccumulator();
+        long lastId = -1;
+        long rows = 0;
+        while (true) {
+            long[] maxId = { lastId };
+            jt.query(sql, rs -> {
+                maxId[0] = rs.getLong(1);
+                int row = batch.addRow(rs.getTimestamp(2).getTime());
+                for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+                    double v = rs.getDouble(c + 3);
+                    if (!rs.wasNull()) batch.set(row, c, v);
+                }
+            }, lastId);
+            if (batch.isEmpty()) break;
+            rows += batch.size();
+            rollup.addAll(batch);
+            upsertRollups(dbKey, jt, "telemetry_rollup", "col", rollup);
+            rollup.clear();
+            batch.clear();
+            lastId = maxId[0];
+        }
+        return rows;
+    }
+
+    private long rebuildMeasurementRollup(String dbKey, JdbcTemplate jt) {
+        String sql = "SELECT id, ts, metric, value_num FROM measurements WHERE id > ? AND value_num IS NOT NULL"
+                + " ORDER BY id LIMIT " + ROLLUP_REBUILD_PAGE;
+        RollupAccumulator rollup = new RollupAccumulator();
+        long lastId = -1;
+        long rows = 0;
+        while (true) {
+            long[] page = { lastId, 0 };
+            jt.query(sql, rs -> {
+                page[0] = rs.getLong(1);
+                page[1]++;
+                rollup.add(rs.getString(3), rs.getTimestamp(2).getTime(), rs.getDouble(4));
+            }, lastId);
+            if (page[1] == 0) break;
+            rows += page[1];
+            upsertRollups(dbKey, jt, "measurement_rollup", "metric", rollup);
+            rollup.clear();
+            lastId = page[0];
+        }
+        return rows;
+    }
+
+    // Coarsest rollup resolution that divides the bucket width and both range bounds, or 0 for raw rows
+    private long rollupResolution(String dbKey, Long fromMillis, Long toMillis, long bucket) {
+        for (long res : RollupAccumulator.RESOLUTIONS) {
+            if (bucket % res != 0) continue;
+            if (fromMillis != null && fromMillis % res != 0) continue;
+            if (toMillis != null && toMillis % res != 0) continue;
+            return hasRollups(dbKey) ? res : 0;
+        }
+        return 0;
+    }
+
+    /** Streams rollup rows ordered by series and bucket and merges them into the requested buckets. */
+    private List<AggregateResponse.Series> aggregateRollup(String dbKey, String table, String nameColumn,
+                                                           List<String> series, Long fromMillis, Long toMillis,
+                                                           long res, long bucket) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(nameColumn)
+                .append(", bucket_ts, cnt, sum_val, min_val, max_val, last_ts, last_val FROM ").append(table)
+                .append(" WHERE res = ? AND ").append(nameColumn).append(" IN (").append(placeholders(series.size())).append(')');
+        List<Object> args = new ArrayList<>();
+        args.add(res);
+        args.addAll(series);
+        if (fromMillis != null) {
+            sql.append(" AND bucket_ts >= ?");
+            args.add(fromMillis);
+        }
+        if (toMillis != null) {
+            sql.append(" AND bucket_ts < ?");
+            args.add(toMillis);
+        }
+        sql.append(" ORDER BY ").append(nameColumn).append(", bucket_ts");
+
+        Map<String, List<AggregateResponse.Bucket>> out = new LinkedHashMap<>();
+        for (String name : series) out.put(name, new ArrayList<>());
+        RollupAccumulator.Entry[] current = { null };
+        reader(dbKey).query(sql.toString(), rs -> {
+            String name = rs.getString(1);
+            long start = RollupAccumulator.bucketStart(rs.getLong(2), bucket);
+            RollupAccumulator.Entry e = current[0];
+            if (e == null || e.bucketTs != start || !e.name.equals(name)) {
+                if (e != null) out.computeIfAbsent(e.name, k -> new ArrayList<>()).add(toBucket(e));
+                e = current[0] = new RollupAccumulator.Entry(bucket, name, start);
+            }
+            e.count += rs.getLong(3);
+            e.sum += rs.getDouble(4);
+            e.min = Math.min(e.min, rs.getDouble(5));
+            e.max = Math.max(e.max, rs.getDouble(6));
+            long lastTs = rs.getLong(7);
+            if (lastTs >= e.lastTs) {
+                e.lastTs = lastTs;
+                e.lastValue = rs.getDouble(8);
+            }
+        }, args.toArray());
+        if (current[0] != null) out.computeIfAbsent(current[0].name, k -> new ArrayList<>()).add(toBucket(current[0]));
+
+        List<AggregateResponse.Series> result = new ArrayList<>(out.size());
+        out.forEach((name, buckets) -> result.add(new AggregateResponse.Series(name, buckets)));
+        return result;
+    }
+
+    private static AggregateResponse.Bucket toBucket(RollupAccumulator.Entry e) {
+        return new AggregateResponse.Bucket(e.bucketTs, e.count, e.min, e.max, e.sum / e.count, e.lastValue);
+    }
+
+    // ============= Export =============
+
+    /**
+     * Streams {@code telemetry} or {@code measurements} as CSV from a forward-only cursor.
+     * MySQL streams row by row (fetch size {@code Integer.MIN_VALUE}), so memory stays flat for any table size.
+     * The telemetry header matches the upload format, so exports can be re-imported.
+     *
+     * @param fromMillis inclusive lower bound on {@code ts}, or null
+     * @param toMillis   exclusive upper bound on {@code ts}, or null
+     * @return number of rows written
+     */
+    public long exportCsv(String dbKey, String table, Long fromMillis, Long toMillis, Writer out) {
+        return metrics.query(dbKey, "export", () -> writeCsv(dbKey, table, fromMillis, toMillis, out));
+    }
+
+    private long writeCsv(String dbKey, String table, Long fromMillis, Long toMillis, Writer out) {
+        boolean telemetry = "telemetry".equals(table);
+        if (!telemetry && !"measurements".equals(table)) throw new IllegalArgumentException("Unknown table: " + table);
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(telemetry ? "ts, " + String.join(", ", TelemetryBatch.COLUMNS)
+                        : "id, sensor_id, ts, location, metric, value_num, value_bool, value_text, unit")
+                .append(" FROM ").append(table).append(" WHERE 1=1");
+        List<Timestamp> args = new ArrayList<>();
+        appendTimeRange(sql, args, fromMillis, toMillis);
+        // with a range, ts order follows idx_telemetry_ts / idx_meas_metric_ts; otherwise the primary key
+        sql.append(args.isEmpty() ? " ORDER BY id" : " ORDER BY ts, id");
+        int fetchSize = dialect(dbKey).streamingFetchSize();
+
+        long[] rows = {0};
+        try {
+            out.write(telemetry ? "timestamp," + String.join(",", TelemetryBatch.COLUMNS) + "\n"
+                    : "id,sensor_id,ts,location,metric,value_num,value_bool,value_text,unit\n");
+            reader(dbKey).query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < args.size(); i++) ps.setTimestamp(i + 1, args.get(i));
+                return ps;
+            }, (ResultSet rs) -> {
+                try {
+                    if (telemetry) writeTelemetryCsvRow(rs, out); else writeMeasurementCsvRow(rs, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows[0];
+    }
+
+    // appends "AND ts >= ? AND ts < ?" for the given bounds; the query must already have a WHERE clause
+    private static void appendTimeRange(StringBuilder sql, List<? super Timestamp> args, Long fromMillis, Long toMillis) {
+        if (fromMillis != null) {
+            sql.append(" AND ts >= ?");
+            args.add(new Timestamp(fromMillis));
+        }
+        if (toMillis != null) {
+            sql.append(" AND ts < ?");
+            args.add(new Timestamp(toMillis));
+        }
+    }
+
+    private static void writeTelemetryCsvRow(ResultSet rs, Writer out) throws SQLException, IOException {
+        Timestamp ts = rs.getTimestamp(1);
+        if (ts != null) out.write(ts.toInstant().toString());
+        for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+            out.write(',');
+            double v = rs.getDouble(c + 2);
+            if (!rs.wasNull()) out.write(Double.toString(v));
+        }
+        out.write('\n');
+    }
+
+    private static void writeMeasurementCsvRow(ResultSet rs, Writer out) throws SQLException, IOException {
+        out.write(Long.toString(rs.getLong(1)));
+        out.write(',');
+        out.write(Long.toString(rs.getLong(2)));
+        out.write(',');
+        Timestamp ts = rs.getTimestamp(3);
+        if (ts != null) out.write(ts.toInstant().toString());
+        out.write(',');
+        writeCsvText(out, rs.getString(4));
+        out.write(',');
+        writeCsvText(out, rs.getString(5));
+        out.write(',');
+        double v = rs.getDouble(6);
+        if (!rs.wasNull()) out.write(Double.toString(v));
+        out.write(',');
+        int b = rs.getInt(7);
+        if (!rs.wasNull()) out.write(Integer.toString(b));
+        out.write(',');
+        writeCsvText(out, rs.getString(8));
+        out.write(',');
+        writeCsvText(out, rs.getString(9));
+        out.write('\n');
+    }
+
+    private static void writeCsvText(Writer out, String s) throws IOException {
+        if (s == null) return;
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            out.write(s);
+            return;
+        }
+        out.write('"');
+        out.write(s.replace("\"", "\"\""));
+        out.write('"');
+    }
+
     public boolean ping(String dbKey) {
         Integer one = jdbc(dbKey).queryForObject("SELECT 1", Integer.class);
         return one != null && one == 1;
@@ -188,24 +1152,58 @@ public class DbService {
         return jdbc(dbKey).queryForList(sql);
     }
 
-    public List<Map<String, Object>> fetchSchema(String dbKey) {
-        JdbcTemplate jt = jdbc(dbKey);
-        // Versuch MariaDB/MySQL
-        try {
-            return jt.queryForList("""
-                SELECT table_name AS name
-                FROM information_schema.tables
-                WHERE table_schema = DATABASE()
-                ORDER BY table_name
-            """);
-        } catch (Exception ignore) {
-            // Fallback SQLite
-            return jt.queryForList("""
-                SELECT name
-                FROM sqlite_master
-                WHERE type='table' AND name NOT LIKE 'sqlite_%'
-                ORDER BY name
-            """);
+    /**
+     * Tables, columns and row estimates of a target from {@link java.sql.DatabaseMetaData}, cached per target
+     * for {@code schema.cache-ttl}. {@link #invalidateSchema} drops the entry after DDL or bulk writes.
+     */
+    public List<TableSchema> fetchSchema(String dbKey) {
+        String key = dbKey.toLowerCase(Locale.ROOT);
+        CachedSchema cached = schemaCache.get(key);
+        if (cached != null && System.nanoTime() - cached.expiresAt() < 0) return cached.tables();
+        List<TableSchema> tables = metrics.query(dbKey, "schema",
+                () -> reader(dbKey).execute((java.sql.Connection con) -> readSchema(key, con)));
+        schemaCache.put(key, new CachedSchema(tables, System.nanoTime() + schemaTtlNanos));
+        return tables;
+    }
+
+    /** Drops the cached schema (and the rollup table check) of a target, e.g. after DDL or a sync run. */
+    public void invalidateSchema(String dbKey) {
+        String key = dbKey.toLowerCase(Locale.ROOT);
+        schemaCache.remove(key);
+        rollupTables.remove(key);
+    }
+
+    private List<TableSchema> readSchema(String key, java.sql.Connection con) throws SQLException {
+        java.sql.DatabaseMetaData md = con.getMetaData();
+        String catalog = con.getCatalog();
+        List<String> names = new ArrayList<>();
+        try (ResultSet rs = md.getTables(catalog, null, "%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                String name = rs.getString("TABLE_NAME");
+                if (!name.startsWith("sqlite_")) names.add(name);
+            }
         }
+        Collections.sort(names);
+        Map<String, Long> estimates = dialect(key).rowEstimates(con, names);
+        List<TableSchema> tables = new ArrayList<>(names.size());
+        for (String name : names) {
+            Map<String, Integer> pk = new HashMap<>();
+            try (ResultSet rs = md.getPrimaryKeys(catalog, null, name)) {
+                while (rs.next()) pk.put(rs.getString("COLUMN_NAME"), rs.getInt("KEY_SEQ"));
+            }
+            List<TableSchema.Column> columns = new ArrayList<>();
+            try (ResultSet rs = md.getColumns(catalog, null, name, "%")) {
+                while (rs.next()) {
+                    String column = rs.getString("COLUMN_NAME");
+                    columns.add(new TableSchema.Column(column, rs.getString("TYPE_NAME"),
+                            "NO".equals(rs.getString("IS_NULLABLE")) ? 1 : 0, pk.getOrDefault(column, 0),
+                            rs.getString("COLUMN_DEF")));
+                }
+            }
+            tables.add(new TableSchema(name, estimates.get(name), List.copyOf(columns)));
+        }
+        return List.copyOf(tables);
     }
+
+    private record CachedSchema(List<TableSchema> tables, long expiresAt) {}
 }
@@ -0,0 +1,141 @@
+package de.jdbcrew.devicebridge.service;
+
+import de.jdbcrew.devicebridge.dto.DeviceStatus;
+import de.jdbcrew.devicebridge.dto.StatusResponse;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Status of every DeviceService target for the fleet overview. Targets are polled in parallel, so the overview
+ * takes as long as the slowest device, which the HTTP timeouts of DeviceClientConfig bound. The result of each
+ * target is cached: younger than {@code devices.status.ttl} it is served as is; up to
+ * {@code devices.status.max-stale} it is served at once while a background poll refreshes it; older or missing
+ * entries are polled and waited for. At most one poll per target is in flight, however many requests ask.
+ */
+@Service
+public class DeviceStatusService {
+
+    private record Entry(StatusResponse status, Instant checkedAt, long polledAt) {}
+
+    private final Map<String, DeviceService> services;
+    private final BridgeMetrics metrics;
+    private final long ttlNanos;
+    private final long maxStaleNanos;
+    private final long waitMillis;
+    private final ExecutorService executor;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> polls = new ConcurrentHashMap<>();
+
+    public DeviceStatusService(List<DeviceService> services, BridgeMetrics metrics,
+                               @Value("${devices.status.ttl:5s}") Duration ttl,
+                               @Value("${devices.status.max-stale:60s}") Duration maxStale,
+                               @Value("${devices.connect-timeout:2s}") Duration connectTimeout,
+                               @Value("${devices.read-timeout:5s}") Duration readTimeout) {
+        Map<String, DeviceService> resolved = new LinkedHashMap<>();
+        for (DeviceService service : services) {
+            String target = service.getTarget();
+            if (target == null || target.isBlank()) continue;
+            resolved.putIfAbsent(target.toLowerCase(Locale.ROOT), service);
+        }
+        this.services = Collections.unmodifiableMap(resolved);
+        this.metrics = metrics;
+        this.ttlNanos = ttl.toNanos();
+        this.maxStaleNanos = Math.max(ttlNanos, maxStale.toNanos());
+        // a poll gives up after connect + read timeout; the margin covers mapping the response
+        this.waitMillis = connectTimeout.plus(readTimeout).toMillis() + 500;
+        // one poll per target at a time, so a hung device never delays the poll of another
+        AtomicInteger n = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, resolved.size()), r -> {
+            Thread t = new Thread(r, "device-status-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** All targets in registration order; a target that has not answered within the timeout is unreachable. */
+    public List<DeviceStatus> statusAll() {
+        Map<String, CompletableFuture<Entry>> awaited = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        for (String target : services.keySet()) {
+            Entry cached = cache.get(target);
+            long age = cached == null ? Long.MAX_VALUE : now - cached.polledAt();
+            if (age < ttlNanos) continue;
+            CompletableFuture<Entry> poll = poll(target);
+            if (age >= maxStaleNanos) awaited.put(target, poll);
+        }
+        if (!awaited.isEmpty()) {
+            try {
+                CompletableFuture.allOf(awaited.values().toArray(CompletableFuture[]::new))
+                        .get(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException | ExecutionException e) {
+                // polls still running are reported as timed out below and land in the cache when they finish
+            }
+        }
+
+        now = System.nanoTime();
+        List<DeviceStatus> result = new ArrayList<>(services.size());
+        for (Map.Entry<String, DeviceService> e : services.entrySet()) {
+            CompletableFuture<Entry> poll = awaited.get(e.getKey());
+            Entry entry = poll != null ? poll.getNow(null) : cache.get(e.getKey());
+            if (entry == null) {
+                StatusResponse timedOut = StatusResponse.error(e.getValue().getTarget(),
+                        "Status timed out after " + waitMillis + " ms");
+                result.add(DeviceStatus.of(timedOut, Instant.now(), 0, false));
+                continue;
+            }
+            long age = Math.max(0, now - entry.polledAt());
+            result.add(DeviceStatus.of(entry.status(), entry.checkedAt(), TimeUnit.NANOSECONDS.toMillis(age),
+                    age >= ttlNanos));
+        }
+        return result;
+    }
+
+    private CompletableFuture<Entry> poll(String target) {
+        CompletableFuture<Entry> poll = new CompletableFuture<>();
+        CompletableFuture<Entry> running = polls.putIfAbsent(target, poll);
+        if (running != null) return running;
+        DeviceService service = services.get(target);
+        executor.execute(() -> {
+            long started = System.nanoTime();
+            StatusResponse status;
+            try {
+                status = service.getStatus();
+            } catch (RuntimeException ex) {
+                status = StatusResponse.error(service.getTarget(),
+                        ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName());
+            }
+            long finished = System.nanoTime();
+            metrics.deviceCall(service.getTarget(), "status", status.reachable(), finished - started);
+            Entry entry = new Entry(status, Instant.now(), finished);
+            cache.put(target, entry);
+            polls.remove(target, poll);
+            poll.complete(entry);
+        });
+        return poll;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,103 @@
+package de.jdbcrew.devicebridge.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs one logical query on several targets at once. Each target gets a task on a bounded pool
+ * ({@code federated.threads}, queue {@code federated.queue}); results are handed to the caller in completion
+ * order, so a slow target delays only its own result. Targets that have not answered within the timeout are
+ * reported as timed out and their task is cancelled (a JDBC call already in the driver runs on until it returns).
+ */
+@Service
+public class FederatedQueryService {
+
+    /** Outcome for one target: {@code result} or {@code error}, plus the time it took. */
+    public record TargetResult<T>(String db, T result, String error, long millis) {}
+
+    private final ThreadPoolExecutor executor;
+    private final long defaultTimeoutMillis;
+
+    public FederatedQueryService(@Value("${federated.threads:8}") int threads,
+                                 @Value("${federated.queue:64}") int queue,
+                                 @Value("${federated.timeout-ms:5000}") long defaultTimeoutMillis) {
+        int size = Math.max(1, threads);
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), r -> {
+                    Thread t = new Thread(r, "federated-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.defaultTimeoutMillis = Math.max(1, defaultTimeoutMillis);
+    }
+
+    public long defaultTimeoutMillis() {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * Runs {@code query} for every dbKey and passes each outcome to {@code sink} as soon as it is available,
+     * on the calling thread. Returns after every target has answered or the timeout has passed.
+     */
+    public <T> void query(Collection<String> dbKeys, long timeoutMillis, Function<String, T> query,
+                          Consumer<TargetResult<T>> sink) throws InterruptedException {
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        BlockingQueue<TargetResult<T>> done = new LinkedBlockingQueue<>();
+        Map<String, Future<?>> pending = new LinkedHashMap<>();
+        try {
+            for (String key : dbKeys) {
+                try {
+                    pending.put(key, executor.submit(() -> done.add(run(key, query))));
+                } catch (RejectedExecutionException e) {
+                    sink.accept(new TargetResult<>(key, null, "Abfrage abgelehnt: zu viele parallele Abfragen", 0));
+                }
+            }
+            while (!pending.isEmpty()) {
+                long left = deadline - System.nanoTime();
+                TargetResult<T> r = left > 0 ? done.poll(left, TimeUnit.NANOSECONDS) : null;
+                if (r == null) break;
+                if (pending.remove(r.db()) != null) sink.accept(r);
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            for (String key : pending.keySet()) {
+                sink.accept(new TargetResult<>(key, null, "Zeitüberschreitung nach " + timeoutMillis + " ms", elapsed));
+            }
+        } finally {
+            pending.values().forEach(f -> f.cancel(true));
+        }
+    }
+
+    private static <T> TargetResult<T> run(String key, Function<String, T> query) {
+        long t0 = System.nanoTime();
+        try {
+            T result = query.apply(key);
+            return new TargetResult<>(key, result, null, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+        } catch (RuntimeException e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return new TargetResult<>(key, null, error, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
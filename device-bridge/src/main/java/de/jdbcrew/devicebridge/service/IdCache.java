@@ -0,0 +1,92 @@
+package de.jdbcrew.devicebridge.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cache of device and sensor ids, one bounded LRU region per dbKey.
+ * Entries are only added after the transaction that resolved them committed,
+ * and a region is dropped when an import using its ids fails.
+ */
+@Component
+public class IdCache {
+
+    public record Stats(String db, long hits, long misses, long evictions, int size, int maxEntries) {}
+
+    private final int maxEntries;
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    public IdCache(@Value("${ingest.id-cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /** Cached id for a device name or sensor key, or null (counted as miss). */
+    public Long get(String dbKey, Object key) {
+        Region r = region(dbKey);
+        Long id;
+        synchronized (r) {
+            id = r.map.get(key);
+        }
+        (id != null ? r.hits : r.misses).increment();
+        return id;
+    }
+
+    public void putAll(String dbKey, Map<?, Long> ids) {
+        if (ids.isEmpty()) return;
+        Region r = region(dbKey);
+        synchronized (r) {
+            r.map.putAll(ids);
+        }
+    }
+
+    public void invalidate(String dbKey, Object key) {
+        Region r = region(dbKey);
+        synchronized (r) {
+            r.map.remove(key);
+        }
+    }
+
+    public void invalidateAll(String dbKey) {
+        Region r = region(dbKey);
+        synchronized (r) {
+            r.map.clear();
+        }
+    }
+
+    public Stats stats(String dbKey) {
+        Region r = region(dbKey);
+        int size;
+        synchronized (r) {
+            size = r.map.size();
+        }
+        return new Stats(dbKey.toLowerCase(Locale.ROOT), r.hits.sum(), r.misses.sum(), r.evictions.sum(), size, maxEntries);
+    }
+
+    private Region region(String dbKey) {
+        return regions.computeIfAbsent(dbKey.toLowerCase(Locale.ROOT), k -> new Region(maxEntries));
+    }
+
+    private static final class Region {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LinkedHashMap<Object, Long> map;
+
+        Region(int maxEntries) {
+            this.map = new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Long> eldest) {
+                    if (size() <= maxEntries) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package de.jdbcrew.devicebridge.service;
+
+import de.jdbcrew.devicebridge.dto.IngestJobStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Asynchronous telemetry uploads. An upload is copied to a spool file and queued; one writer thread per
+ * dbKey reads the queued files side by side and commits their rows together, up to
+ * {@code ingest.queue.group-rows} rows per transaction. A full queue rejects new uploads
+ * ({@link QueueFullException}) instead of piling up files and threads. Groups go through {@link IngestSpool},
+ * so uploads for an unreachable target are parked locally rather than failed.
+ */
+@Service
+public class IngestQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestQueue.class);
+    private static final int MAX_ACTIVE_JOBS = 8;
+    private static final int MAX_FINISHED_JOBS = 200;
+
+    /** The dbKey's queue has no free slot; the caller should retry later. */
+    public static class QueueFullException extends IllegalStateException {
+        public QueueFullException(String dbKey) {
+            super("Ingest queue full for " + dbKey);
+        }
+    }
+
+    private enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    private final IngestSpool ingestSpool;
+    private final BridgeMetrics metrics;
+    private final int capacity;
+    private final int chunkRows;
+    private final int groupRows;
+    private final Path spoolDir;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> finished = new ConcurrentLinkedDeque<>();
+    private final Map<String, Writer> writers = new ConcurrentHashMap<>();
+
+    public IngestQueue(IngestSpool ingestSpool, BridgeMetrics metrics,
+                       @Value("${ingest.queue.capacity:16}") int capacity,
+                       @Value("${ingest.chunk-rows:5000}") int chunkRows,
+                       @Value("${ingest.queue.group-rows:20000}") int groupRows,
+                       @Value("${ingest.queue.dir:${java.io.tmpdir}/device-bridge-ingest}") String spoolDir) throws IOException {
+        this.ingestSpool = ingestSpool;
+        this.metrics = metrics;
+        this.capacity = Math.max(1, capacity);
+        this.chunkRows = Math.max(1, chunkRows);
+        this.groupRows = Math.max(this.chunkRows, groupRows);
+        this.spoolDir = Files.createDirectories(Path.of(spoolDir));
+    }
+
+    /**
+     * Spools an upload and queues it for the dbKey's writer. The header is checked up front, so a file
+     * with missing columns fails here with {@link IllegalArgumentException} rather than later in the job.
+     */
+    public IngestJobStatus submit(String dbKey, InputStream upload) throws IOException {
+        String key = dbKey.toLowerCase(Locale.ROOT);
+        // a writer killed by an Error has failed its jobs; start a fresh one instead of queueing into the void
+        Writer writer = writers.compute(key, (k, w) -> w != null && w.thread.isAlive() ? w : new Writer(k));
+        if (writer.queue.remainingCapacity() == 0) throw new QueueFullException(key);
+
+        Path file = Files.createTempFile(spoolDir, "upload-", ".csv");
+        try {
+            Files.copy(upload, file, StandardCopyOption.REPLACE_EXISTING);
+            try (TelemetryCsvReader header = new TelemetryCsvReader(Files.newInputStream(file))) {
+                // header validated by the constructor
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), key, file);
+        jobs.put(job.id, job);
+        if (!writer.queue.offer(job)) {
+            jobs.remove(job.id);
+            Files.deleteIfExists(file);
+            throw new QueueFullException(key);
+        }
+        // the writer died between the check above and the offer: nobody will take the job
+        if (!writer.thread.isAlive() && writer.queue.remove(job)) finish(job, "Abgebrochen");
+        return status(job);
+    }
+
+    /** Status of a job of the given dbKey, or null if unknown (or already evicted). */
+    public IngestJobStatus status(String dbKey, String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null || !job.dbKey.equals(dbKey.toLowerCase(Locale.ROOT)) ? null : status(job);
+    }
+
+    /** Known jobs of a dbKey, newest first. */
+    public List<IngestJobStatus> jobs(String dbKey) {
+        String key = dbKey.toLowerCase(Locale.ROOT);
+        return jobs.values().stream()
+                .filter(j -> j.dbKey.equals(key))
+                .sorted(Comparator.comparing((Job j) -> j.createdAt).reversed())
+                .map(this::status)
+                .toList();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writers.values().forEach(Writer::stop);
+    }
+
+    private IngestJobStatus status(Job job) {
+        Instant end = job.finishedAt != null ? job.finishedAt : Instant.now();
+        double seconds = job.startedAt == null ? 0 : Duration.between(job.startedAt, end).toMillis() / 1000.0;
+        Writer writer = writers.get(job.dbKey);
+        return new IngestJobStatus(job.id, job.dbKey, job.state.name(), job.rowsImported, job.rowsSpooled, job.linesRead,
+                job.rejectedLines, job.rejectedSamples, job.commits, seconds > 0 ? job.rowsImported / seconds : 0,
+                job.error, job.createdAt, job.startedAt, job.finishedAt, writer == null ? 0 : writer.queue.size());
+    }
+
+    private static final class Job {
+        final String id;
+        final String dbKey;
+        final Path file;
+        final Instant createdAt = Instant.now();
+        // written by the writer thread, read by status requests
+        volatile State state = State.QUEUED;
+        volatile long rowsImported;
+        volatile long rowsSpooled;
+        volatile long linesRead;
+        volatile long rejectedLines;
+        volatile List<Long> rejectedSamples = List.of();
+        volatile int commits;
+        volatile String error;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+        TelemetryCsvReader reader;
+        boolean eof;
+
+        Job(String id, String dbKey, Path file) {
+            this.id = id;
+            this.dbKey = dbKey;
+            this.file = file;
+        }
+    }
+
+    /** Single consumer of one dbKey's queue; keeps up to {@value #MAX_ACTIVE_JOBS} uploads open at once. */
+    private final class Writer implements Runnable {
+        final String dbKey;
+        final BlockingQueue<Job> queue = new ArrayBlockingQueue<>(capacity);
+        final Thread thread;
+        volatile boolean running = true;
+
+        Writer(String dbKey) {
+            this.dbKey = dbKey;
+            this.thread = new Thread(this, "ingest-" + dbKey);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void stop() {
+            running = false;
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            List<Job> active = new ArrayList<>();
+            TelemetryBatch group = new TelemetryBatch(groupRows);
+            try {
+                while (running) {
+                    try {
+                        if (active.isEmpty()) open(queue.take(), active);
+                        Job next;
+                        while (active.size() < MAX_ACTIVE_JOBS && (next = queue.poll()) != null) open(next, active);
+                        commitGroup(active, group);
+                    } catch (RuntimeException e) {
+                        // fail what is open and keep serving the queue; the next jobs may well succeed
+                        log.error("Ingest writer of '{}' failed: {}", dbKey, e.toString());
+                        active.forEach(j -> finish(j, "Import fehlgeschlagen: " + e.getMessage()));
+                        active.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.forEach(j -> finish(j, "Abgebrochen"));
+                queue.forEach(j -> finish(j, "Abgebrochen"));
+            }
+        }
+
+        private void open(Job job, List<Job> active) {
+            try {
+                job.reader = new TelemetryCsvReader(Files.newInputStream(job.file));
+                job.startedAt = Instant.now();
+                job.state = State.RUNNING;
+                active.add(job);
+            } catch (IOException | RuntimeException e) {
+                finish(job, e.getMessage());
+            }
+        }
+
+        // Reads up to one chunk from every active job into the group and commits it in one transaction
+        private void commitGroup(List<Job> active, TelemetryBatch group) {
+            group.clear();
+            int[] contributed = new int[active.size()];
+            long started = System.nanoTime();
+            long bytes = 0;
+            for (int i = 0; i < active.size() && group.size() < groupRows; i++) {
+                Job job = active.get(i);
+                int want = Math.min(chunkRows, groupRows - group.size());
+                long bytesBefore = job.reader.bytesRead();
+                try {
+                    contributed[i] = job.reader.readChunk(group, want);
+                    job.eof = contributed[i] < want;
+                } catch (IOException e) {
+                    job.error = "Datei konnte nicht gelesen werden";
+                    job.eof = true;
+                }
+                bytes += job.reader.bytesRead() - bytesBefore;
+                job.linesRead = job.reader.lineNumber();
+                job.rejectedLines = job.reader.rejectedLines();
+                job.rejectedSamples = List.copyOf(job.reader.rejectedSamples());
+            }
+
+            long parsed = System.nanoTime();
+            metrics.ingest(dbKey, "parse", group.size(), bytes, parsed - started);
+            if (!group.isEmpty()) {
+                try {
+                    IngestSpool.Outcome outcome = ingestSpool.importOrSpool(dbKey, group);
+                    metrics.stored(dbKey, outcome, bytes, System.nanoTime() - parsed);
+                    boolean spooled = outcome.spooled() > 0;
+                    for (int i = 0; i < contributed.length; i++) {
+                        if (contributed[i] == 0) continue;
+                        Job job = active.get(i);
+                        if (spooled) {
+                            job.rowsSpooled += contributed[i];
+                        } else {
+                            job.rowsImported += contributed[i];
+                            job.commits++;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // the group shares one transaction, so every job with rows in it failed
+                    log.warn("Group commit on '{}' failed: {}", dbKey, e.getMessage());
+                    for (int i = 0; i < contributed.length; i++) {
+                        if (contributed[i] == 0) continue;
+                        Job job = active.get(i);
+                        job.error = "Import fehlgeschlagen: " + e.getMessage();
+                        job.eof = true;
+                    }
+                }
+            }
+
+            for (Iterator<Job> it = active.iterator(); it.hasNext(); ) {
+                Job job = it.next();
+                if (!job.eof) continue;
+                it.remove();
+                String error = job.error;
+                if (error == null && job.rowsImported + job.rowsSpooled == 0) error = "Keine Messwerte importiert";
+                finish(job, error);
+            }
+        }
+    }
+
+    private void finish(Job job, String error) {
+        try {
+            if (job.reader != null) job.reader.close();
+            Files.deleteIfExists(job.file);
+        } catch (IOException e) {
+            log.warn("Could not remove spool file {}: {}", job.file, e.getMessage());
+        } finally {
+            job.error = error;
+            job.state = error == null ? State.DONE : State.FAILED;
+            job.finishedAt = Instant.now();
+            finished.add(job.id);
+            while (finished.size() > MAX_FINISHED_JOBS) {
+                String old = finished.poll();
+                if (old != null) jobs.remove(old);
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package de.jdbcrew.devicebridge.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local write-ahead spool for telemetry of targets that are unreachable. When an import fails because the
+ * database cannot be reached, the target's circuit opens and its rows go to {@code <dir>/<key>.spool}
+ * (see {@link TelemetryFrameCodec}) instead; later uploads are spooled right away, so they neither wait for
+ * connection timeouts nor overtake spooled rows. A scheduled task pings the target and replays the spool in
+ * large batches, recording the replayed offset in {@code <key>.ckpt} after each commit. Rows appended during
+ * a pass are replayed at its end with appends held back, and the circuit closes in the same step, so the
+ * spool drains under steady ingest too.
+ * <p>
+ * Replay is at-least-once. The checkpoint is written after the target's transaction has committed; a crash
+ * in between replays that batch (up to {@code ingest.spool.replay-rows} rows) on restart, and since
+ * {@code telemetry} has no unique key those rows are then stored twice.
+ * <p>
+ * A replay that fails for any other reason than connectivity (constraint violation, schema change, damaged
+ * frame) would fail the same way on every retry. The spool and its checkpoint are then moved aside to
+ * {@code <key>-<millis>.quarantine(.ckpt)}, listed in {@link Status#quarantine}, and the circuit closes so new
+ * uploads are imported again instead of queueing behind the stuck frame.
+ */
+@Service
+public class IngestSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestSpool.class);
+
+    public record Outcome(int imported, int spooled) {}
+
+    /** {@code quarantine}: spool files set aside after a replay failed for good, oldest first. */
+    public record Status(String db, String circuit, long pendingBytes, long spooledRows, long replayedRows,
+                         String lastError, Instant openedAt, Instant lastReplayAt, List<String> quarantine) {}
+
+    private final DbService dbService;
+    private final Path dir;
+    private final boolean fsync;
+    private final int replayRows;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    public IngestSpool(DbService dbService,
+                       @Value("${ingest.spool.dir:spool}") String dir,
+                       @Value("${ingest.spool.fsync:true}") boolean fsync,
+                       @Value("${ingest.spool.replay-rows:50000}") int replayRows) throws IOException {
+        this.dbService = dbService;
+        this.dir = Files.createDirectories(Path.of(dir));
+        this.fsync = fsync;
+        this.replayRows = Math.max(1, replayRows);
+        // spools left over from a previous run are replayed like fresh ones
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.dir, "*.spool")) {
+            for (Path f : files) {
+                String key = f.getFileName().toString().replaceFirst("\\.spool$", "");
+                if (dbService.isSupportedDb(key) && Files.size(f) > 0) target(key).open("Spool aus vorherigem Lauf");
+            }
+        }
+    }
+
+    /**
+     * Imports a batch, or appends it to the spool when the target is down or still has spooled rows.
+     * Errors other than connectivity (e.g. constraint violations) are thrown as before.
+     */
+    public Outcome importOrSpool(String dbKey, TelemetryBatch batch) {
+        if (batch.isEmpty()) return new Outcome(0, 0);
+        Target t = target(dbKey);
+        if (!t.isOpen()) {
+            try {
+                return new Outcome(dbService.importTelemetry(dbKey, batch), 0);
+            } catch (RuntimeException e) {
+                if (!unreachable(e)) throw e;
+                log.warn("Target '{}' unreachable, spooling: {}", t.key, e.getMessage());
+                t.open(e.getMessage());
+            }
+        }
+        // the spool drained and closed the circuit in the meantime: import directly after all
+        if (!append(t, batch)) return importOrSpool(dbKey, batch);
+        return new Outcome(0, batch.size());
+    }
+
+    /** Errors that mean the target cannot be reached right now, as opposed to errors of the rows themselves. */
+    static boolean unreachable(RuntimeException e) {
+        return e instanceof DataAccessResourceFailureException || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException;
+    }
+
+    public Status status(String dbKey) {
+        Target t = target(dbKey);
+        List<String> quarantine = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, t.key + "-*.quarantine")) {
+            files.forEach(f -> quarantine.add(f.getFileName().toString()));
+        } catch (IOException e) {
+            log.warn("Quarantine of '{}' not listable: {}", t.key, e.getMessage());
+        }
+        quarantine.sort(null);
+        synchronized (t) {
+            return new Status(t.key, t.isOpen() ? "OPEN" : "CLOSED", Math.max(0, t.size - t.checkpoint),
+                    t.spooledRows, t.replayedRows, t.lastError, t.openedAt, t.lastReplayAt, quarantine);
+        }
+    }
+
+    /** Pings every target with spooled rows and replays what it can; closes the circuit once a spool is drained. */
+    @Scheduled(fixedDelayString = "${ingest.spool.replay-interval-ms:5000}")
+    public void replayPending() {
+        for (Target t : targets.values()) {
+            if (!t.isOpen()) continue;
+            try {
+                if (!dbService.ping(t.key)) continue;
+                replay(t);
+            } catch (IOException | RuntimeException e) {
+                // a relocation into the target only delays the replay, like an outage
+                if (e instanceof RuntimeException re && (unreachable(re) || re instanceof DbService.RelocationInProgressException)) {
+                    synchronized (t) {
+                        t.lastError = e.getMessage();
+                    }
+                    continue;
+                }
+                log.error("Replay of '{}' failed, moving the spool to quarantine: {}", t.key, e.getMessage());
+                try {
+                    quarantine(t, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                } catch (IOException q) {
+                    log.error("Spool of '{}' could not be quarantined: {}", t.key, q.getMessage());
+                    synchronized (t) {
+                        t.lastError = e.getMessage();
+                    }
+                }
+            }
+        }
+    }
+
+    /** Appends a batch to the spool of an open circuit; false if the circuit has been closed meanwhile. */
+    boolean append(Target t, TelemetryBatch batch) {
+        ByteBuffer frame = TelemetryFrameCodec.encode(batch, 0, batch.size());
+        synchronized (t) {
+            if (t.openedAt == null) return false;
+            try (FileChannel ch = FileChannel.open(t.spool, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                if (t.size == 0) {
+                    ch.truncate(0);
+                    writeFully(ch, TelemetryFrameCodec.header(TelemetryBatch.COLUMNS), 0);
+                    t.size = ch.position();
+                    t.checkpoint = t.size;
+                    writeCheckpoint(t);
+                }
+                try {
+                    writeFully(ch, frame, t.size);
+                    if (fsync) ch.force(false);
+                } catch (IOException e) {
+                    ch.truncate(t.size); // no half-written frame in front of the next append
+                    throw e;
+                }
+                t.size += frame.limit();
+                t.spooledRows += batch.size();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Spool für " + t.key + " nicht beschreibbar", e);
+            }
+        }
+        return true;
+    }
+
+    /** Drops all spooled rows of a target and closes its circuit. */
+    void discard(String dbKey) throws IOException {
+        Target t = target(dbKey);
+        synchronized (t) {
+            Files.deleteIfExists(t.spool);
+            Files.deleteIfExists(t.checkpointFile);
+            t.size = 0;
+            t.checkpoint = 0;
+            t.openedAt = null;
+        }
+    }
+
+    // Sets the spool (with the checkpoint of what was replayed) aside and closes the circuit
+    private void quarantine(Target t, String error) throws IOException {
+        synchronized (t) {
+            String name = t.key + "-" + System.currentTimeMillis() + ".quarantine";
+            Path moved = dir.resolve(name);
+            if (Files.exists(t.checkpointFile)) {
+                Files.move(t.checkpointFile, dir.resolve(name + ".ckpt"), StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (Files.exists(t.spool)) Files.move(t.spool, moved, StandardCopyOption.ATOMIC_MOVE);
+            t.size = 0;
+            t.checkpoint = 0;
+            t.openedAt = null;
+            t.lastError = "Quarantäne " + name + ": " + error;
+        }
+    }
+
+    private void replay(Target t) throws IOException {
+        long end;
+        synchronized (t) {
+            end = t.size;
+        }
+        replayTo(t, end);
+        synchronized (t) {
+            // what was appended during the pass is replayed while appends wait, then the circuit closes
+            if (t.checkpoint < t.size) replayTo(t, t.size);
+            Files.deleteIfExists(t.spool);
+            Files.deleteIfExists(t.checkpointFile);
+            t.size = 0;
+            t.checkpoint = 0;
+            t.openedAt = null;
+            t.lastError = null;
+            log.info("Spool of '{}' replayed, circuit closed", t.key);
+        }
+    }
+
+    private void replayTo(Target t, long end) throws IOException {
+        long offset;
+        synchronized (t) {
+            offset = t.checkpoint;
+        }
+        if (offset >= end) return;
+        TelemetryBatch batch = new TelemetryBatch(Math.min(replayRows, 65_536));
+        ByteBuffer[] scratch = new ByteBuffer[1];
+        try (FileChannel ch = FileChannel.open(t.spool, StandardOpenOption.READ)) {
+            int[] columns = TelemetryFrameCodec.readHeader(ch);
+            long position = Math.max(offset, ch.position());
+            ch.position(position);
+            while (position < end) {
+                ByteBuffer payload = TelemetryFrameCodec.readFrame(ch, scratch);
+                if (payload == null) break;
+                TelemetryFrameCodec.decode(payload, columns, batch);
+                position = ch.position();
+                if (batch.size() >= replayRows) {
+                    commit(t, batch, position);
+                }
+            }
+            commit(t, batch, position);
+        }
+    }
+
+    private void commit(Target t, TelemetryBatch batch, long position) throws IOException {
+        if (!batch.isEmpty()) dbService.importTelemetry(t.key, batch);
+        synchronized (t) {
+            t.replayedRows += batch.size();
+            t.checkpoint = position;
+            t.lastReplayAt = Instant.now();
+            writeCheckpoint(t);
+        }
+        batch.clear();
+    }
+
+    private void writeCheckpoint(Target t) throws IOException {
+        Path tmp = t.checkpointFile.resolveSibling(t.checkpointFile.getFileName() + ".tmp");
+        ByteBuffer buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, t.checkpoint);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(ch, buf, 0);
+            if (fsync) ch.force(false);
+        }
+        Files.move(tmp, t.checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) pos += ch.write(buf, pos);
+        ch.position(pos);
+    }
+
+    Target target(String dbKey) {
+        return targets.computeIfAbsent(dbKey.toLowerCase(Locale.ROOT), Target::new);
+    }
+
+    final class Target {
+        final String key;
+        final Path spool;
+        final Path checkpointFile;
+        long size;
+        long checkpoint;
+        long spooledRows;
+        long replayedRows;
+        String lastError;
+        Instant openedAt;
+        Instant lastReplayAt;
+
+        Target(String key) {
+            this.key = key;
+            this.spool = dir.resolve(key + ".spool");
+            this.checkpointFile = dir.resolve(key + ".ckpt");
+            try {
+                if (Files.exists(checkpointFile)) {
+                    this.checkpoint = ByteBuffer.wrap(Files.readAllBytes(checkpointFile)).order(ByteOrder.LITTLE_ENDIAN).getLong();
+                }
+                this.size = Files.exists(spool) ? recoverTail() : 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // A crash while appending can leave a torn frame at the end; cut the file back to the last intact frame
+        private long recoverTail() throws IOException {
+            try (FileChannel ch = FileChannel.open(spool, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long valid = 0;
+                try {
+                    TelemetryFrameCodec.readHeader(ch);
+                    valid = Math.max(checkpoint, ch.position());
+                    ch.position(valid);
+                    ByteBuffer[] scratch = new ByteBuffer[1];
+                    while (TelemetryFrameCodec.readFrame(ch, scratch) != null) valid = ch.position();
+                } catch (IOException e) {
+                    log.warn("Spool of '{}' damaged after offset {}: {}", key, valid, e.getMessage());
+                }
+                if (valid < ch.size()) ch.truncate(valid);
+                if (valid == 0) checkpoint = 0;
+                return valid;
+            }
+        }
+
+        synchronized boolean isOpen() {
+            return openedAt != null;
+        }
+
+        synchronized void open(String error) {
+            if (openedAt == null) openedAt = Instant.now();
+            lastError = error;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MySQL/MariaDB. Connector/J runs with {@code rewriteBatchedStatements}, so JDBC batches already go out as
+ * multi-row INSERTs. There is no RETURNING (MySQL) and the ids of a multi-row INSERT IGNORE cannot be told
+ * apart, so generated ids are read back with a SELECT.
+ */
+final class MySqlDialect implements SqlDialect {
+
+    @Override
+    public String name() {
+        return "mysql";
+    }
+
+    @Override
+    public boolean singleWriter() {
+        return false;
+    }
+
+    @Override
+    public String insertIgnore() {
+        return "INSERT IGNORE";
+    }
+
+    @Override
+    public String onConflictUpdate(String conflictColumns) {
+        return " ON DUPLICATE KEY UPDATE ";
+    }
+
+    @Override
+    public String excluded(String column) {
+        // MariaDB has no "AS new" row alias, so VALUES() it is
+        return "VALUES(" + column + ")";
+    }
+
+    @Override
+    public String onConflictKeepId(String conflictColumns, String column) {
+        // LAST_INSERT_ID(expr) makes the existing id the statement's generated key
+        return " ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)";
+    }
+
+    @Override
+    public String least(String a, String b) {
+        return "LEAST(" + a + ", " + b + ")";
+    }
+
+    @Override
+    public String greatest(String a, String b) {
+        return "GREATEST(" + a + ", " + b + ")";
+    }
+
+    @Override
+    public boolean supportsReturning() {
+        return false;
+    }
+
+    @Override
+    public int rowsPerInsert(int columns) {
+        return 1;
+    }
+
+    // UNIX_TIMESTAMP reads DATETIME in the session time_zone, which MultiDataSourceConfig pins to the driver's zone
+    @Override
+    public String bucketExpr(String column) {
+        return "FLOOR(UNIX_TIMESTAMP(" + column + ") * 1000 / ?)";
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        return Integer.MIN_VALUE; // Connector/J: row by row
+    }
+
+    @Override
+    public String dropIndex(String index, String table) {
+        return "DROP INDEX " + index + " ON " + table;
+    }
+
+    @Override
+    public String createIndex(String index, String table, String columns) {
+        return "CREATE INDEX " + index + " ON " + table + " (" + columns + ")";
+    }
+
+    @Override
+    public boolean keepsForeignKeyIndexes() {
+        return true;
+    }
+
+    // InnoDB statistics; approximate, but no table scan
+    @Override
+    public Map<String, Long> rowEstimates(Connection con, List<String> tables) throws SQLException {
+        Map<String, Long> rows = new HashMap<>();
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT table_name, table_rows FROM information_schema.tables WHERE table_schema = DATABASE()")) {
+            while (rs.next()) {
+                long n = rs.getLong(2);
+                if (!rs.wasNull()) rows.put(rs.getString(1), n);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void bulkLoadChecks(Connection con, boolean on) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute(on ? "SET unique_checks = 1, foreign_key_checks = 1" : "SET unique_checks = 0, foreign_key_checks = 0");
+        }
+    }
+}
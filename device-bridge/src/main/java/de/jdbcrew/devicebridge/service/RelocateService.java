@@ -0,0 +1,524 @@
+package de.jdbcrew.devicebridge.service;
+
+import de.jdbcrew.devicebridge.config.MultiDataSourceConfig;
+import de.jdbcrew.devicebridge.dto.RelocateStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bulk copy of {@code telemetry} and {@code measurements} from one target into an empty one. Devices and
+ * sensors are registered first and measurement sensor ids remapped; row ids are kept. Each table is split
+ * into id ranges that {@code relocate.workers} threads read with a streaming cursor and write with multi-row
+ * INSERTs of {@code relocate.insert-rows} rows, committing every {@code relocate.commit-rows}. Secondary
+ * indexes of the destination are dropped for the copy and rebuilt afterwards. Finally the destination is
+ * read back and its row count and checksum compared with what was read from the source.
+ * <p>
+ * SQLite destinations are written by a single worker and their only connection is held for the copy.
+ * Imports into the destination fail with {@link DbService.RelocationInProgressException} until it has finished.
+ * A failed relocation leaves the committed part behind; empty the destination tables before retrying.
+ */
+@Service
+public class RelocateService {
+
+    private static final Logger log = LoggerFactory.getLogger(RelocateService.class);
+    private static final int RANGES_PER_WORKER = 4;
+    private static final int MAX_FINISHED_JOBS = 20;
+
+    /** A relocation is already running, or the destination holds data. */
+    public static class RelocateConflictException extends IllegalStateException {
+        public RelocateConflictException(String message) {
+            super(message);
+        }
+    }
+
+    private enum Kind { LONG, SENSOR, TS, DOUBLE, INT, TEXT }
+
+    private record Column(String name, Kind kind) {}
+
+    private record Index(String name, String columns, boolean backsForeignKey) {}
+
+    private record Table(String name, List<Column> columns, List<Index> indexes) {
+        String columnList() {
+            return String.join(", ", columns.stream().map(Column::name).toList());
+        }
+    }
+
+    // MySQL keeps idx_meas_sensor_ts: fk_meas_sensor needs an index on sensor_id
+    private static final List<Table> TABLES = List.of(
+            new Table("telemetry", telemetryColumns(), List.of(new Index("idx_telemetry_ts", "ts", false))),
+            new Table("measurements", List.of(
+                    new Column("id", Kind.LONG), new Column("sensor_id", Kind.SENSOR), new Column("ts", Kind.TS),
+                    new Column("location", Kind.TEXT), new Column("metric", Kind.TEXT),
+                    new Column("value_num", Kind.DOUBLE), new Column("value_bool", Kind.INT),
+                    new Column("value_text", Kind.TEXT), new Column("unit", Kind.TEXT), new Column("meta_json", Kind.TEXT)),
+                    List.of(new Index("idx_meas_sensor_ts", "sensor_id, ts", true),
+                            new Index("idx_meas_metric_ts", "metric, ts", false))));
+
+    private final DbService dbService;
+    private final Map<String, JdbcTemplate> jdbcTemplates;
+    private final Map<String, JdbcTemplate> readOnly;
+    private final int workers;
+    private final int insertRows;
+    private final int commitRows;
+    private final ExecutorService pool;
+    private final AtomicReference<Job> running = new AtomicReference<>();
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> finished = new ArrayDeque<>();
+
+    public RelocateService(DbService dbService, Map<String, JdbcTemplate> jdbcTemplates,
+                           MultiDataSourceConfig.ReadOnlyTemplates readOnlyTemplates,
+                           @Value("${relocate.workers:4}") int workers,
+                           @Value("${relocate.insert-rows:500}") int insertRows,
+                           @Value("${relocate.commit-rows:20000}") int commitRows) {
+        this.dbService = dbService;
+        this.jdbcTemplates = jdbcTemplates;
+        this.readOnly = readOnlyTemplates.byKey();
+        this.workers = Math.max(1, workers);
+        this.insertRows = Math.max(1, insertRows);
+        this.commitRows = Math.max(this.insertRows, commitRows);
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread t = new Thread(r, "relocate-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts copying {@code from} into {@code to} in the background.
+     *
+     * @throws IllegalArgumentException   for unknown or identical keys
+     * @throws RelocateConflictException if a relocation is running or the destination tables are not empty
+     */
+    public RelocateStatus start(String from, String to) {
+        String source = from.toLowerCase(Locale.ROOT);
+        String target = to.toLowerCase(Locale.ROOT);
+        if (!dbService.isSupportedDb(source)) throw new IllegalArgumentException("Unknown database: " + from);
+        if (!dbService.isSupportedDb(target)) throw new IllegalArgumentException("Unknown database: " + to);
+        if (source.equals(target)) throw new IllegalArgumentException("Source and target are the same: " + from);
+
+        Job job = new Job(UUID.randomUUID().toString(), source, target, dbService.dialect(target).singleWriter() ? 1 : workers);
+        if (!running.compareAndSet(null, job)) throw new RelocateConflictException("Relocation already running");
+        dbService.beginRelocation(target);
+        try {
+            for (Table t : TABLES) {
+                Long rows = jdbc(target).queryForObject("SELECT COUNT(*) FROM " + t.name(), Long.class);
+                if (rows != null && rows > 0) throw new RelocateConflictException(t.name() + " in " + target + " is not empty");
+            }
+        } catch (RuntimeException e) {
+            dbService.endRelocation(target);
+            running.set(null);
+            throw e;
+        }
+        jobs.put(job.id, job);
+        Thread coordinator = new Thread(() -> run(job), "relocate-" + source + "-" + target);
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return status(job);
+    }
+
+    /** Status of a relocation, or null if unknown (or already evicted). */
+    public RelocateStatus status(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : status(job);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void run(Job job) {
+        try {
+            job.phase = "sensors";
+            Map<Long, Long> sensorIds = registerSensors(job);
+            for (Table t : TABLES) {
+                Long rows = reader(job.from).queryForObject("SELECT COUNT(*) FROM " + t.name(), Long.class);
+                job.rowsTotal += rows == null ? 0 : rows;
+            }
+            Map<Table, long[]> read = new LinkedHashMap<>();
+            for (Table t : TABLES) {
+                job.phase = t.name();
+                read.put(t, copyTable(job, t, sensorIds));
+            }
+            job.phase = "verify";
+            boolean ok = true;
+            for (var e : read.entrySet()) {
+                long[] written = scan(job, e.getKey(), jdbc(job.to).getDataSource(), job.to, null, null);
+                long[] source = e.getValue();
+                boolean match = source[0] == written[0] && source[1] == written[1];
+                job.checks.add(new RelocateStatus.TableCheck(e.getKey().name(), source[0], written[0], source[1], written[1], match));
+                ok &= match;
+            }
+            job.phase = "rollups";
+            try {
+                dbService.rebuildRollups(job.to);
+            } catch (IllegalStateException e) {
+                // destination without rollup tables
+            }
+            finish(job, ok ? null : "Zeilenzahl oder Prüfsumme weicht ab");
+        } catch (Exception e) {
+            log.error("Relocation {} -> {} failed", job.from, job.to, e);
+            finish(job, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    private Map<Long, Long> registerSensors(Job job) {
+        JdbcTemplate src = reader(job.from);
+        List<String> devices = src.queryForList("SELECT name FROM devices", String.class);
+        Map<Long, DbService.SensorRef> sensors = new HashMap<>();
+        src.query("SELECT s.id, d.name, s.kind, s.label FROM sensors s JOIN devices d ON d.id = s.device_id",
+                (ResultSet rs) -> { sensors.put(rs.getLong(1), new DbService.SensorRef(rs.getString(2), rs.getString(3), rs.getString(4))); });
+        return dbService.registerSensors(job.to, devices, sensors);
+    }
+
+    // Copies one table range by range; returns {rows, checksum} of what was read from the source
+    private long[] copyTable(Job job, Table table, Map<Long, Long> sensorIds) throws Exception {
+        List<Index> dropped = dropIndexes(job.to, table);
+        try {
+            return scan(job, table, jdbc(job.to).getDataSource(), job.to, readerSource(job.from), sensorIds);
+        } finally {
+            createIndexes(job.to, table, dropped);
+            dbService.invalidateSchema(job.to);
+        }
+    }
+
+    /**
+     * Reads {@code table} in id ranges on the worker pool. With a source, rows are read there and written to
+     * {@code target}; without one, {@code target} itself is read (verification).
+     *
+     * @return {rows, checksum}
+     */
+    private long[] scan(Job job, Table table, DataSource target, String targetKey, DataSource source,
+                        Map<Long, Long> sensorIds) throws Exception {
+        DataSource readFrom = source != null ? source : target;
+        String readKey = source != null ? job.from : targetKey;
+        long[] bounds = new JdbcTemplate(readFrom).queryForObject("SELECT MIN(id), MAX(id) FROM " + table.name(),
+                (rs, i) -> new long[] {rs.getLong(1), rs.getLong(2)});
+        if (bounds == null || bounds[1] == 0) return new long[] {0, 0};
+
+        Queue<long[]> ranges = new ConcurrentLinkedQueue<>(split(bounds[0], bounds[1] + 1, job.workers * RANGES_PER_WORKER));
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int w = 0; w < job.workers; w++) {
+            results.add(pool.submit(() -> {
+                long[] sum = {0, 0};
+                long[] range;
+                while ((range = ranges.poll()) != null) {
+                    long[] part = source != null
+                            ? copyRange(job, table, range, source, target, targetKey, sensorIds)
+                            : readRange(table, range, readFrom, readKey);
+                    sum[0] += part[0];
+                    sum[1] += part[1];
+                }
+                return sum;
+            }));
+        }
+        long[] total = {0, 0};
+        try {
+            for (Future<long[]> f : results) {
+                long[] part = f.get();
+                total[0] += part[0];
+                total[1] += part[1];
+            }
+        } catch (ExecutionException e) {
+            ranges.clear();
+            results.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof Exception ex) throw ex;
+            throw e;
+        }
+        return total;
+    }
+
+    private long[] copyRange(Job job, Table table, long[] range, DataSource source, DataSource target,
+                             String targetKey, Map<Long, Long> sensorIds) throws SQLException {
+        SqlDialect dialect = dbService.dialect(targetKey);
+        int width = table.columns().size();
+        long rows = 0;
+        long checksum = 0;
+        try (Connection in = source.getConnection(); Connection out = target.getConnection()) {
+            boolean autoCommit = out.getAutoCommit();
+            out.setAutoCommit(false);
+            dialect.bulkLoadChecks(out, false);
+            try (PreparedStatement select = select(in, table, range, dbService.dialect(job.from));
+                 ResultSet rs = select.executeQuery();
+                 PreparedStatement insert = out.prepareStatement(insertSql(table, insertRows))) {
+                Object[][] buffer = new Object[insertRows][width];
+                int n = 0;
+                int uncommitted = 0;
+                while (rs.next()) {
+                    read(rs, table, sensorIds, buffer[n]);
+                    checksum += hash(buffer[n]);
+                    if (++n == insertRows) {
+                        bind(insert, table, buffer, n);
+                        insert.executeUpdate();
+                        rows += n;
+                        uncommitted += n;
+                        job.rowsCopied.add(n);
+                        n = 0;
+                        if (uncommitted >= commitRows) {
+                            out.commit();
+                            uncommitted = 0;
+                        }
+                    }
+                }
+                if (n > 0) {
+                    try (PreparedStatement rest = out.prepareStatement(insertSql(table, n))) {
+                        bind(rest, table, buffer, n);
+                        rest.executeUpdate();
+                    }
+                    rows += n;
+                    job.rowsCopied.add(n);
+                }
+                out.commit();
+            } catch (SQLException | RuntimeException e) {
+                out.rollback();
+                throw e;
+            } finally {
+                dialect.bulkLoadChecks(out, true);
+                out.setAutoCommit(autoCommit);
+            }
+        }
+        return new long[] {rows, checksum};
+    }
+
+    private long[] readRange(Table table, long[] range, DataSource ds, String key) throws SQLException {
+        long rows = 0;
+        long checksum = 0;
+        Object[] row = new Object[table.columns().size()];
+        try (Connection in = ds.getConnection();
+             PreparedStatement select = select(in, table, range, dbService.dialect(key));
+             ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                read(rs, table, null, row);
+                checksum += hash(row);
+                rows++;
+            }
+        }
+        return new long[] {rows, checksum};
+    }
+
+    private static PreparedStatement select(Connection con, Table table, long[] range, SqlDialect dialect) throws SQLException {
+        PreparedStatement ps = con.prepareStatement("SELECT " + table.columnList() + " FROM " + table.name()
+                + " WHERE id >= ? AND id < ? ORDER BY id", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(dialect.streamingFetchSize());
+        ps.setLong(1, range[0]);
+        ps.setLong(2, range[1]);
+        return ps;
+    }
+
+    private static String insertSql(Table table, int rows) {
+        String tuple = "(" + String.join(",", Collections.nCopies(table.columns().size(), "?")) + ")";
+        return "INSERT INTO " + table.name() + " (" + table.columnList() + ") VALUES "
+                + String.join(",", Collections.nCopies(rows, tuple));
+    }
+
+    private static void read(ResultSet rs, Table table, Map<Long, Long> sensorIds, Object[] row) throws SQLException {
+        List<Column> columns = table.columns();
+        for (int c = 0; c < columns.size(); c++) {
+            int i = c + 1;
+            row[c] = switch (columns.get(c).kind()) {
+                case LONG -> rs.getLong(i);
+                case SENSOR -> {
+                    long id = rs.getLong(i);
+                    if (sensorIds == null) yield id;
+                    Long mapped = sensorIds.get(id);
+                    if (mapped == null) throw new SQLException("No sensor mapping for sensor_id " + id);
+                    yield mapped;
+                }
+                case TS -> {
+                    Timestamp ts = rs.getTimestamp(i);
+                    yield ts == null ? null : ts.getTime();
+                }
+                case DOUBLE -> {
+                    double v = rs.getDouble(i);
+                    yield rs.wasNull() ? null : v;
+                }
+                case INT -> {
+                    int v = rs.getInt(i);
+                    yield rs.wasNull() ? null : v;
+                }
+                case TEXT -> rs.getString(i);
+            };
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Table table, Object[][] rows, int n) throws SQLException {
+        List<Column> columns = table.columns();
+        int p = 1;
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < columns.size(); c++, p++) {
+                Object v = rows[r][c];
+                switch (columns.get(c).kind()) {
+                    case LONG, SENSOR -> ps.setLong(p, (Long) v);
+                    case TS -> {
+                        if (v == null) ps.setNull(p, Types.TIMESTAMP); else ps.setTimestamp(p, new Timestamp((Long) v));
+                    }
+                    case DOUBLE -> {
+                        if (v == null) ps.setNull(p, Types.DOUBLE); else ps.setDouble(p, (Double) v);
+                    }
+                    case INT -> {
+                        if (v == null) ps.setNull(p, Types.INTEGER); else ps.setInt(p, (Integer) v);
+                    }
+                    case TEXT -> {
+                        if (v == null) ps.setNull(p, Types.VARCHAR); else ps.setString(p, (String) v);
+                    }
+                }
+            }
+        }
+    }
+
+    // 64-bit hash of one row; tables are compared by the sum over all rows, so range order does not matter
+    private static long hash(Object[] row) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (Object v : row) {
+            long x;
+            if (v == null) x = 0x6E756C6CL;
+            else if (v instanceof Double d) x = Double.doubleToLongBits(d);
+            else if (v instanceof Number num) x = num.longValue();
+            else {
+                String s = (String) v;
+                x = s.length();
+                for (int i = 0; i < s.length(); i++) x = x * 31 + s.charAt(i);
+            }
+            h = (h ^ x) * 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+        return h;
+    }
+
+    // Drops the table's secondary indexes that exist on the destination; returns the dropped ones
+    private List<Index> dropIndexes(String key, Table table) {
+        SqlDialect dialect = dbService.dialect(key);
+        JdbcTemplate jt = jdbc(key);
+        Set<String> existing = jt.execute((Connection con) -> {
+            Set<String> names = new HashSet<>();
+            try (ResultSet rs = con.getMetaData().getIndexInfo(con.getCatalog(), null, table.name(), false, false)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    if (name != null) names.add(name.toLowerCase(Locale.ROOT));
+                }
+            }
+            return names;
+        });
+        List<Index> dropped = new ArrayList<>();
+        for (Index idx : table.indexes()) {
+            if (idx.backsForeignKey() && dialect.keepsForeignKeyIndexes()) continue;
+            if (existing == null || !existing.contains(idx.name())) continue;
+            jt.execute(dialect.dropIndex(idx.name(), table.name()));
+            dropped.add(idx);
+        }
+        return dropped;
+    }
+
+    private void createIndexes(String key, Table table, List<Index> indexes) {
+        SqlDialect dialect = dbService.dialect(key);
+        for (Index idx : indexes) {
+            try {
+                jdbc(key).execute(dialect.createIndex(idx.name(), table.name(), idx.columns()));
+            } catch (RuntimeException e) {
+                log.error("Could not recreate index {} on {}.{}: {}", idx.name(), key, table.name(), e.getMessage());
+            }
+        }
+    }
+
+    // [from, to) in up to n ranges of equal id width
+    private static List<long[]> split(long from, long to, int n) {
+        long width = Math.max(1, (to - from + n - 1) / n);
+        List<long[]> ranges = new ArrayList<>();
+        for (long start = from; start < to; start += width) ranges.add(new long[] {start, Math.min(to, start + width)});
+        return ranges;
+    }
+
+    private JdbcTemplate jdbc(String key) {
+        JdbcTemplate jt = jdbcTemplates.get(key);
+        if (jt == null) throw new IllegalArgumentException("Unknown database: " + key);
+        return jt;
+    }
+
+    // Read-only pool of a SQLite target, so parallel range reads do not queue on the writer's connection
+    private JdbcTemplate reader(String key) {
+        JdbcTemplate jt = readOnly.get(key);
+        return jt != null ? jt : jdbc(key);
+    }
+
+    private DataSource readerSource(String key) {
+        return reader(key).getDataSource();
+    }
+
+    private RelocateStatus status(Job job) {
+        Instant end = job.finishedAt != null ? job.finishedAt : Instant.now();
+        double seconds = Duration.between(job.startedAt, end).toMillis() / 1000.0;
+        long copied = job.rowsCopied.sum();
+        return new RelocateStatus(job.id, job.from, job.to, job.state, job.phase, job.workers, job.rowsTotal, copied,
+                seconds > 0 ? copied / seconds : 0, List.copyOf(job.checks), job.error, job.startedAt, job.finishedAt);
+    }
+
+    private void finish(Job job, String error) {
+        dbService.endRelocation(job.to);
+        job.error = error;
+        job.state = error == null ? "DONE" : "FAILED";
+        job.phase = null;
+        job.finishedAt = Instant.now();
+        running.set(null);
+        log.info("Relocation {} -> {} {}: {} rows", job.from, job.to, job.state, job.rowsCopied.sum());
+        synchronized (finished) {
+            finished.add(job.id);
+            while (finished.size() > MAX_FINISHED_JOBS) jobs.remove(finished.poll());
+        }
+    }
+
+    private static List<Column> telemetryColumns() {
+        List<Column> columns = new ArrayList<>();
+        columns.add(new Column("id", Kind.LONG));
+        columns.add(new Column("ts", Kind.TS));
+        for (String c : TelemetryBatch.COLUMNS) columns.add(new Column(c, Kind.DOUBLE));
+        return List.copyOf(columns);
+    }
+
+    private static final class Job {
+        final String id;
+        final String from;
+        final String to;
+        final int workers;
+        final Instant startedAt = Instant.now();
+        final LongAdder rowsCopied = new LongAdder();
+        final List<RelocateStatus.TableCheck> checks = Collections.synchronizedList(new ArrayList<>());
+        // written by the coordinator thread, read by status requests
+        volatile String state = "RUNNING";
+        volatile String phase;
+        volatile long rowsTotal;
+        volatile String error;
+        volatile Instant finishedAt;
+
+        Job(String id, String from, String to, int workers) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.workers = workers;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds raw values into 1-minute, 1-hour and 1-day buckets before they are upserted into
+ * {@code telemetry_rollup} / {@code measurement_rollup}. Partial accumulations merge additively,
+ * so an import chunk, a retry or a rebuild page can each be flushed on its own.
+ */
+public final class RollupAccumulator {
+
+    /** Rollup resolutions in millis, coarsest first. */
+    public static final long[] RESOLUTIONS = { 86_400_000L, 3_600_000L, 60_000L };
+
+    /** One rollup row; {@code last} is the value with the highest timestamp (later values win ties). */
+    public static final class Entry {
+        final long res;
+        final String name;
+        final long bucketTs;
+        long count;
+        double sum;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        long lastTs = Long.MIN_VALUE;
+        double lastValue;
+
+        Entry(long res, String name, long bucketTs) {
+            this.res = res;
+            this.name = name;
+            this.bucketTs = bucketTs;
+        }
+
+        void add(long ts, double v) {
+            count++;
+            sum += v;
+            if (v < min) min = v;
+            if (v > max) max = v;
+            if (ts >= lastTs) {
+                lastTs = ts;
+                lastValue = v;
+            }
+        }
+    }
+
+    private record Key(long res, String name, long bucketTs) {}
+
+    private final Map<Key, Entry> entries = new HashMap<>();
+
+    public void add(String name, long ts, double value) {
+        if (Double.isNaN(value)) return;
+        for (long res : RESOLUTIONS) entry(res, name, ts).add(ts, value);
+    }
+
+    /** Adds all non-null values of a telemetry batch, walking each column so runs of one bucket hit the map once. */
+    public void addAll(TelemetryBatch batch) {
+        for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+            String name = TelemetryBatch.COLUMNS.get(c);
+            for (long res : RESOLUTIONS) {
+                Entry current = null;
+                for (int row = 0; row < batch.size(); row++) {
+                    if (batch.isNull(row, c)) continue;
+                    long ts = batch.epochMillis(row);
+                    if (current == null || current.bucketTs != bucketStart(ts, res)) current = entry(res, name, ts);
+                    current.add(ts, batch.value(row, c));
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    static long bucketStart(long ts, long res) {
+        return Math.floorDiv(ts, res) * res;
+    }
+
+    private Entry entry(long res, String name, long ts) {
+        long bucket = bucketStart(ts, res);
+        return entries.computeIfAbsent(new Key(res, name, bucket), k -> new Entry(res, name, bucket));
+    }
+}
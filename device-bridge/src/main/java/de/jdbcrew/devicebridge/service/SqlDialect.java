@@ -0,0 +1,82 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The SQL that differs between MySQL/MariaDB and SQLite. Each target gets its dialect once, from the JDBC URL
+ * its pool is created with ({@link #forJdbcUrl}); services ask {@link DbService#dialect} instead of branching
+ * on the engine themselves.
+ */
+public interface SqlDialect {
+
+    SqlDialect MYSQL = new MySqlDialect();
+    SqlDialect SQLITE = new SqliteDialect();
+
+    static SqlDialect forJdbcUrl(String url) {
+        return url != null && url.toLowerCase(Locale.ROOT).startsWith("jdbc:sqlite:") ? SQLITE : MYSQL;
+    }
+
+    String name();
+
+    /** One writer per database file: writes are serialized, bulk copies use a single worker. */
+    boolean singleWriter();
+
+    /** {@code INSERT} that skips rows violating a unique key, e.g. {@code insertIgnore() + " INTO t …"}. */
+    String insertIgnore();
+
+    /**
+     * Appended to an {@code INSERT … VALUES (…)} to update the row that hit the unique key
+     * {@code conflictColumns} instead; followed by the assignments.
+     */
+    String onConflictUpdate(String conflictColumns);
+
+    /** The value the conflicting INSERT would have written to {@code column}, inside {@link #onConflictUpdate}. */
+    String excluded(String column);
+
+    /**
+     * Appended to an INSERT into a table with an {@code id} key so that a row already present under the unique
+     * key {@code conflictColumns} is kept and still reports its id: through RETURNING where supported
+     * (the no-op update of {@code column} makes the row show up), otherwise as the generated key of a
+     * single-row INSERT.
+     */
+    String onConflictKeepId(String conflictColumns, String column);
+
+    String least(String a, String b);
+
+    String greatest(String a, String b);
+
+    /** Whether {@code INSERT … RETURNING} hands back the written rows, saving the re-SELECT of generated ids. */
+    boolean supportsReturning();
+
+    /**
+     * Rows per multi-row {@code INSERT … VALUES (…),(…)} built by the caller, for {@code columns} bind
+     * parameters per row; 1 where the driver already rewrites JDBC batches into multi-row statements.
+     */
+    int rowsPerInsert(int columns);
+
+    /** Integer bucket number of {@code column} in epoch millis; the bucket width is the first bind parameter. */
+    String bucketExpr(String column);
+
+    /** Fetch size for a forward-only cursor that streams rows instead of buffering the whole result. */
+    int streamingFetchSize();
+
+    String dropIndex(String index, String table);
+
+    String createIndex(String index, String table, String columns);
+
+    /** Whether indexes backing a foreign key must stay while rows are bulk loaded (InnoDB refuses to drop them). */
+    boolean keepsForeignKeyIndexes();
+
+    /** Approximate row counts of {@code tables} from the engine's statistics, without scanning them. */
+    Map<String, Long> rowEstimates(Connection con, List<String> tables) throws SQLException;
+
+    /**
+     * Switches per-row constraint checks off (or back on) on a connection used for a bulk load of already
+     * consistent rows. No-op where the engine has no such switch.
+     */
+    void bulkLoadChecks(Connection con, boolean on) throws SQLException;
+}
@@ -0,0 +1,150 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SQLite (3.35+ for RETURNING). Timestamps are stored as epoch millis. sqlite-jdbc executes a JDBC batch
+ * statement by statement, so callers build multi-row INSERTs themselves, bounded by the bind parameter limit.
+ */
+final class SqliteDialect implements SqlDialect {
+
+    // SQLITE_MAX_VARIABLE_NUMBER since 3.32
+    private static final int MAX_BIND_PARAMETERS = 32766;
+    private static final int MAX_ROWS_PER_INSERT = 500;
+
+    @Override
+    public String name() {
+        return "sqlite";
+    }
+
+    @Override
+    public boolean singleWriter() {
+        return true;
+    }
+
+    @Override
+    public String insertIgnore() {
+        return "INSERT OR IGNORE";
+    }
+
+    @Override
+    public String onConflictUpdate(String conflictColumns) {
+        return " ON CONFLICT(" + conflictColumns + ") DO UPDATE SET ";
+    }
+
+    @Override
+    public String excluded(String column) {
+        return "excluded." + column;
+    }
+
+    @Override
+    public String onConflictKeepId(String conflictColumns, String column) {
+        // DO NOTHING would leave the existing row out of RETURNING
+        return " ON CONFLICT(" + conflictColumns + ") DO UPDATE SET " + column + " = excluded." + column;
+    }
+
+    @Override
+    public String least(String a, String b) {
+        return "MIN(" + a + ", " + b + ")";
+    }
+
+    @Override
+    public String greatest(String a, String b) {
+        return "MAX(" + a + ", " + b + ")";
+    }
+
+    @Override
+    public boolean supportsReturning() {
+        return true;
+    }
+
+    @Override
+    public int rowsPerInsert(int columns) {
+        return Math.max(1, Math.min(MAX_ROWS_PER_INSERT, MAX_BIND_PARAMETERS / Math.max(1, columns)));
+    }
+
+    @Override
+    public String bucketExpr(String column) {
+        return "(" + column + " / ?)";
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        return 1000;
+    }
+
+    @Override
+    public String dropIndex(String index, String table) {
+        return "DROP INDEX IF EXISTS " + index;
+    }
+
+    @Override
+    public String createIndex(String index, String table, String columns) {
+        return "CREATE INDEX IF NOT EXISTS " + index + " ON " + table + " (" + columns + ")";
+    }
+
+    @Override
+    public boolean keepsForeignKeyIndexes() {
+        return false;
+    }
+
+    /**
+     * sqlite_stat1 where ANALYZE has run, otherwise MAX(rowid) (one b-tree descent, too high by the deleted rows).
+     * WITHOUT ROWID tables have no rowid and are counted; only sync_checkpoint is one and it stays tiny.
+     */
+    @Override
+    public Map<String, Long> rowEstimates(Connection con, List<String> names) throws SQLException {
+        Map<String, Long> rows = new HashMap<>();
+        Set<String> withoutRowid = new HashSet<>();
+        boolean stat1 = false;
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT name, sql FROM sqlite_master WHERE type = 'table'")) {
+            while (rs.next()) {
+                String name = rs.getString(1);
+                String sql = rs.getString(2);
+                if ("sqlite_stat1".equals(name)) stat1 = true;
+                if (sql != null && sql.toUpperCase(Locale.ROOT).replaceAll("\\s+", " ").contains("WITHOUT ROWID")) {
+                    withoutRowid.add(name);
+                }
+            }
+        }
+        if (stat1) {
+            try (Statement st = con.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT tbl, stat FROM sqlite_stat1")) {
+                while (rs.next()) {
+                    String stat = rs.getString(2);
+                    if (stat == null) continue;
+                    try {
+                        rows.putIfAbsent(rs.getString(1), Long.parseLong(stat.split(" ", 2)[0]));
+                    } catch (NumberFormatException ignore) {
+                        // malformed statistics row, fall through to the rowid estimate
+                    }
+                }
+            }
+        }
+        for (String name : names) {
+            if (rows.containsKey(name)) continue;
+            String sql = withoutRowid.contains(name)
+                    ? "SELECT COUNT(*) FROM \"" + name + "\""
+                    : "SELECT COALESCE(MAX(rowid), 0) FROM \"" + name + "\"";
+            try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+                if (rs.next()) rows.put(name, rs.getLong(1));
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void bulkLoadChecks(Connection con, boolean on) {
+        // foreign keys are off by default and unique checks cannot be switched off
+    }
+}
@@ -0,0 +1,224 @@
+package de.jdbcrew.devicebridge.service;
+
+import de.jdbcrew.devicebridge.config.MultiDataSourceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incremental copy of {@code telemetry} and {@code measurements} from one target to another (typically a
+ * local SQLite file to MariaDB). Per source and table the target keeps a high-water mark in
+ * {@code sync_checkpoint}; each page of new source rows is inserted through {@link DbService} and the mark is
+ * advanced in the same target transaction, so an interrupted sync resumes where it stopped without duplicates.
+ * Measurements are re-keyed by device name and sensor (kind, label), since ids differ between databases.
+ * <p>
+ * Source ids must grow in commit order, which holds only for single-writer dialects (SQLite: one writer per
+ * file). With concurrent MySQL writers a lower AUTO_INCREMENT id can commit after the mark has passed it and
+ * would never be copied, so such sources are rejected.
+ */
+@Service
+public class SyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncService.class);
+
+    public record Result(String source, String target, long telemetryRows, long measurementRows,
+                         long telemetryLastId, long measurementLastId, int batches, long millis) {}
+
+    /** Another sync of the same source/target pair is running, or advanced the checkpoint meanwhile. */
+    public static class SyncConflictException extends IllegalStateException {
+        public SyncConflictException(String message) {
+            super(message);
+        }
+    }
+
+    /** The target has no {@code sync_checkpoint} table to keep the high-water marks in. */
+    public static class MissingCheckpointTableException extends IllegalStateException {
+        public MissingCheckpointTableException(String message) {
+            super(message);
+        }
+    }
+
+    private final DbService dbService;
+    private final Map<String, JdbcTemplate> jdbcTemplates;
+    private final Map<String, JdbcTemplate> readOnly;
+    private final int batchRows;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public SyncService(DbService dbService, Map<String, JdbcTemplate> jdbcTemplates,
+                       MultiDataSourceConfig.ReadOnlyTemplates readOnlyTemplates,
+                       @Value("${sync.batch-rows:5000}") int batchRows) {
+        this.dbService = dbService;
+        this.jdbcTemplates = jdbcTemplates;
+        this.readOnly = readOnlyTemplates.byKey();
+        this.batchRows = Math.max(1, batchRows);
+    }
+
+    /**
+     * Copies all rows added to {@code source} since the last sync into {@code target}.
+     *
+     * @throws IllegalArgumentException         for unknown or identical keys, or a source with concurrent writers
+     * @throws MissingCheckpointTableException if the target has no {@code sync_checkpoint} table
+     * @throws SyncConflictException           if the pair is already being synced
+     */
+    public Result sync(String source, String target) {
+        String from = source.toLowerCase(Locale.ROOT);
+        String to = target.toLowerCase(Locale.ROOT);
+        if (!dbService.isSupportedDb(from)) throw new IllegalArgumentException("Unknown database: " + source);
+        if (!dbService.isSupportedDb(to)) throw new IllegalArgumentException("Unknown database: " + target);
+        if (from.equals(to)) throw new IllegalArgumentException("Source and target are the same: " + source);
+        if (!dbService.dialect(from).singleWriter()) {
+            throw new IllegalArgumentException("Sync source must be a single-writer database (SQLite): " + source);
+        }
+        if (!hasCheckpointTable(to)) throw new MissingCheckpointTableException("sync_checkpoint missing in " + target);
+
+        String pair = from + "->" + to;
+        if (!running.add(pair)) throw new SyncConflictException("Sync already running: " + pair);
+        try {
+            long started = System.currentTimeMillis();
+            int[] batches = {0};
+            long[] telemetry = syncTelemetry(from, to, batches);
+            long[] measurements = syncMeasurements(from, to, batches);
+            Result result = new Result(from, to, telemetry[0], measurements[0], telemetry[1], measurements[1],
+                    batches[0], System.currentTimeMillis() - started);
+            log.info("Sync {}: {} telemetry / {} measurement rows in {} batches, {} ms", pair,
+                    result.telemetryRows(), result.measurementRows(), result.batches(), result.millis());
+            return result;
+        } finally {
+            running.remove(pair);
+            dbService.invalidateSchema(to); // row estimates changed, even when a batch failed half-way
+        }
+    }
+
+    // returns {rows copied, last id}
+    private long[] syncTelemetry(String from, String to, int[] batches) {
+        String sql = "SELECT id, ts, " + String.join(", ", TelemetryBatch.COLUMNS)
+                + " FROM telemetry WHERE id > ? ORDER BY id LIMIT ?";
+        long lastId = checkpoint(to, from, "telemetry");
+        long copied = 0;
+        TelemetryBatch batch = new TelemetryBatch(batchRows);
+        while (true) {
+            batch.clear();
+            long[] last = {lastId, 0};
+            reader(from).query(con -> page(con, from, sql, last[0]), (ResultSet rs) -> {
+                last[0] = rs.getLong(1);
+                Timestamp ts = rs.getTimestamp(2);
+                last[1] = ts.getTime();
+                int row = batch.addRow(last[1]);
+                for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+                    double v = rs.getDouble(c + 3);
+                    if (!rs.wasNull()) batch.set(row, c, v);
+                }
+            });
+            if (batch.isEmpty()) return new long[] {copied, lastId};
+            long expected = lastId;
+            int rows = batch.size();
+            dbService.importTelemetry(to, batch,
+                    jt -> advance(jt, to, from, "telemetry", expected, last[0], last[1], rows));
+            lastId = last[0];
+            copied += rows;
+            batches[0]++;
+        }
+    }
+
+    private long[] syncMeasurements(String from, String to, int[] batches) {
+        String sql = """
+                SELECT m.id, d.name, s.kind, s.label, m.ts, m.location, m.metric,
+                       m.value_num, m.value_bool, m.unit, m.value_text, m.meta_json
+                FROM measurements m
+                JOIN sensors s ON s.id = m.sensor_id
+                JOIN devices d ON d.id = s.device_id
+                WHERE m.id > ? ORDER BY m.id LIMIT ?""";
+        long lastId = checkpoint(to, from, "measurements");
+        long copied = 0;
+        List<DbService.SensorMeasurement> rows = new ArrayList<>(batchRows);
+        while (true) {
+            rows.clear();
+            long[] last = {lastId, 0};
+            reader(from).query(con -> page(con, from, sql, last[0]), (ResultSet rs) -> {
+                last[0] = rs.getLong(1);
+                Timestamp ts = rs.getTimestamp(5);
+                last[1] = ts.getTime();
+                double num = rs.getDouble(8);
+                Double valueNum = rs.wasNull() ? null : num;
+                int bool = rs.getInt(9);
+                Integer valueBool = rs.wasNull() ? null : bool;
+                rows.add(new DbService.SensorMeasurement(rs.getString(2), rs.getString(3), rs.getString(4), ts,
+                        rs.getString(6), rs.getString(7), valueNum, valueBool, rs.getString(10),
+                        rs.getString(11), rs.getString(12)));
+            });
+            if (rows.isEmpty()) return new long[] {copied, lastId};
+            long expected = lastId;
+            int count = rows.size();
+            dbService.importMeasurements(to, rows,
+                    jt -> advance(jt, to, from, "measurements", expected, last[0], last[1], count));
+            lastId = last[0];
+            copied += count;
+            batches[0]++;
+        }
+    }
+
+    private PreparedStatement page(java.sql.Connection con, String from, String sql, long afterId)
+            throws java.sql.SQLException {
+        PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(dbService.dialect(from).streamingFetchSize());
+        ps.setLong(1, afterId);
+        ps.setInt(2, batchRows);
+        return ps;
+    }
+
+    private long checkpoint(String target, String source, String table) {
+        List<Long> ids = reader(target).queryForList(
+                "SELECT last_id FROM sync_checkpoint WHERE source = ? AND tbl = ?", Long.class, source, table);
+        return ids.isEmpty() || ids.get(0) == null ? 0 : ids.get(0);
+    }
+
+    // Moves the mark from expected to lastId inside the import transaction; a lost race rolls the page back
+    private void advance(JdbcTemplate jt, String target, String source, String table, long expected,
+                         long lastId, long lastTs, int rows) {
+        long now = System.currentTimeMillis();
+        jt.update(dbService.dialect(target).insertIgnore()
+                + " INTO sync_checkpoint (source, tbl, last_id, rows_synced, updated_at) VALUES (?, ?, 0, 0, ?)",
+                source, table, now);
+        int updated = jt.update("UPDATE sync_checkpoint SET last_id = ?, last_ts = ?, rows_synced = rows_synced + ?,"
+                        + " updated_at = ? WHERE source = ? AND tbl = ? AND last_id = ?",
+                lastId, lastTs, rows, now, source, table, expected);
+        if (updated != 1) {
+            throw new SyncConflictException("Checkpoint of " + source + "/" + table + " in " + target + " moved concurrently");
+        }
+    }
+
+    private boolean hasCheckpointTable(String target) {
+        Boolean present = jdbc(target).execute((java.sql.Connection con) -> {
+            DatabaseMetaData md = con.getMetaData();
+            try (ResultSet rs = md.getTables(con.getCatalog(), null, "sync_checkpoint", null)) {
+                return rs.next();
+            }
+        });
+        return Boolean.TRUE.equals(present);
+    }
+
+    private JdbcTemplate jdbc(String key) {
+        JdbcTemplate jt = jdbcTemplates.get(key);
+        if (jt == null) throw new IllegalArgumentException("Unknown database: " + key);
+        return jt;
+    }
+
+    // Read-only pool of a SQLite target, so a long sync does not hold the writer's only connection
+    private JdbcTemplate reader(String key) {
+        JdbcTemplate jt = readOnly.get(key);
+        return jt != null ? jt : jdbc(key);
+    }
+}
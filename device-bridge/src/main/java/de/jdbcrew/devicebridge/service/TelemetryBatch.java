@@ -0,0 +1,103 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar, reusable batch of telemetry rows: one {@code double[]} per metric column,
+ * a null bitmap per column and the timestamps as epoch millis. A batch is filled by the
+ * CSV reader, bound by {@link DbService#importTelemetry(String, TelemetryBatch)} and then
+ * {@link #clear() cleared} for the next chunk, so a whole upload reuses the same arrays.
+ */
+public final class TelemetryBatch {
+
+    /** Metric columns of the {@code telemetry} table, in insert order (after {@code ts}). */
+    public static final List<String> COLUMNS = List.of(
+            "servo10_y_deg", "servo11_x_deg", "led12_pct", "led13_pct", "led14_pct", "led15_pct",
+            "temp_c", "press_hpa", "hum_perc", "mag_x", "mag_y", "mag_z",
+            "accel_x", "accel_y", "accel_z", "gyro_x", "gyro_y", "gyro_z");
+
+    public static final int COLUMN_COUNT = COLUMNS.size();
+
+    private long[] epochMillis;
+    private final double[][] values = new double[COLUMN_COUNT][];
+    private final long[][] nullMask = new long[COLUMN_COUNT][];
+    private int size;
+
+    public TelemetryBatch(int initialCapacity) {
+        int cap = Math.max(64, initialCapacity);
+        epochMillis = new long[cap];
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            values[c] = new double[cap];
+            nullMask[c] = new long[words(cap)];
+        }
+    }
+
+    /** Index of a metric column by name, or -1. */
+    public static int columnIndex(String name) {
+        return COLUMNS.indexOf(name);
+    }
+
+    /**
+     * Appends a row with all metric values NULL.
+     *
+     * @return index of the new row
+     */
+    public int addRow(long tsMillis) {
+        if (size == epochMillis.length) grow();
+        int row = size++;
+        epochMillis[row] = tsMillis;
+        long bit = 1L << row;
+        for (int c = 0; c < COLUMN_COUNT; c++) nullMask[c][row >>> 6] |= bit;
+        return row;
+    }
+
+    /** Sets a value; {@code NaN} is stored as NULL. */
+    public void set(int row, int column, double value) {
+        if (Double.isNaN(value)) {
+            nullMask[column][row >>> 6] |= 1L << row;
+        } else {
+            values[column][row] = value;
+            nullMask[column][row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    public boolean isNull(int row, int column) {
+        return (nullMask[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    public double value(int row, int column) {
+        return values[column][row];
+    }
+
+    public long epochMillis(int row) {
+        return epochMillis[row];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Drops all rows but keeps the arrays for reuse. */
+    public void clear() {
+        for (int c = 0; c < COLUMN_COUNT; c++) Arrays.fill(nullMask[c], 0, words(size), 0L);
+        size = 0;
+    }
+
+    private void grow() {
+        int cap = epochMillis.length * 2;
+        epochMillis = Arrays.copyOf(epochMillis, cap);
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            values[c] = Arrays.copyOf(values[c], cap);
+            nullMask[c] = Arrays.copyOf(nullMask[c], words(cap));
+        }
+    }
+
+    private static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+}
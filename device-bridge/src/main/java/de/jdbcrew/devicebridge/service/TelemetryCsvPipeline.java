@@ -0,0 +1,218 @@
+package de.jdbcrew.devicebridge.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a telemetry CSV upload into chunks of at most {@code chunkRows} rows and hands them to an insert stage,
+ * in file order and on the calling thread.
+ * <p>
+ * Large files ({@code ingest.parse.parallel-min-bytes}) are cut into slices of {@code chunkRows} lines and the
+ * slices are parsed on a shared fork-join pool while the caller inserts the previous chunks. Lines are cut where
+ * {@link CsvTokenizer} ends them ({@code \n}, {@code \r}, {@code \r\n}, also inside quotes), and a line break byte
+ * never occurs inside a UTF-8 sequence, so every slice parses exactly as it would sequentially. At most
+ * {@code ingest.parse.window} slices per upload are parsed ahead of the insert, which bounds memory and makes a
+ * slow database throttle the parsing. Smaller files are parsed on the caller's thread.
+ */
+@Service
+public class TelemetryCsvPipeline {
+
+    /** Receives each chunk in file order; the batch is reused once this returns. */
+    @FunctionalInterface
+    public interface ChunkSink {
+        void accept(TelemetryBatch chunk, long bytes);
+    }
+
+    /** Lines read including header and blank lines, and the lines skipped for lack of a timestamp. */
+    public record Result(long lines, long rejectedLines, List<Long> rejectedSamples) {}
+
+    private record Slice(byte[] bytes, int lines) {}
+
+    private record Parsed(TelemetryBatch batch, long bytes, long rejectedLines, List<Long> rejectedSamples) {}
+
+    private final BridgeMetrics metrics;
+    private final ForkJoinPool pool;
+    private final int threads;
+    private final long parallelMinBytes;
+    private final int window;
+
+    public TelemetryCsvPipeline(BridgeMetrics metrics,
+                                @Value("${ingest.parse.threads:0}") int threads,
+                                @Value("${ingest.parse.parallel-min-bytes:4MB}") DataSize parallelMinBytes,
+                                @Value("${ingest.parse.window:0}") int window) {
+        this.metrics = metrics;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.threads);
+        this.parallelMinBytes = parallelMinBytes.toBytes();
+        this.window = window > 0 ? window : 2 * this.threads;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Parses {@code in} and passes every non-empty chunk to {@code sink}.
+     *
+     * @param size bytes of the upload if known (-1 otherwise); decides between parallel and sequential parsing
+     * @throws IllegalArgumentException if the header lacks a required column
+     */
+    public Result parse(String db, InputStream in, long size, int chunkRows, ChunkSink sink) throws IOException {
+        return threads > 1 && size >= parallelMinBytes
+                ? parseParallel(db, in, chunkRows, sink)
+                : parseSequential(db, in, chunkRows, sink);
+    }
+
+    private Result parseSequential(String db, InputStream in, int chunkRows, ChunkSink sink) throws IOException {
+        try (TelemetryCsvReader reader = new TelemetryCsvReader(in)) {
+            TelemetryBatch chunk = new TelemetryBatch(chunkRows);
+            while (true) {
+                long started = System.nanoTime();
+                long bytesBefore = reader.bytesRead();
+                int rows = reader.readChunk(chunk, chunkRows);
+                long bytes = reader.bytesRead() - bytesBefore;
+                metrics.ingest(db, "parse", rows, bytes, System.nanoTime() - started);
+                if (rows == 0) break;
+                sink.accept(chunk, bytes);
+                chunk.clear();
+            }
+            return new Result(reader.lineNumber(), reader.rejectedLines(), reader.rejectedSamples());
+        }
+    }
+
+    private Result parseParallel(String db, InputStream in, int chunkRows, ChunkSink sink) throws IOException {
+        LineSplitter splitter = new LineSplitter(in);
+        Slice head = splitter.next(1);
+        TelemetryCsvReader header = new TelemetryCsvReader(reader(head != null ? head.bytes() : new byte[0]));
+        long lines = head != null ? head.lines() : 0;
+        long rejected = 0;
+        List<Long> samples = new ArrayList<>();
+
+        ArrayDeque<Future<Parsed>> ahead = new ArrayDeque<>();
+        ArrayDeque<TelemetryBatch> free = new ArrayDeque<>();
+        try {
+            while (true) {
+                Slice slice = head != null ? splitter.next(chunkRows) : null;
+                if (slice != null) {
+                    TelemetryBatch batch = free.isEmpty() ? new TelemetryBatch(chunkRows) : free.poll();
+                    long linesBefore = lines;
+                    lines += slice.lines();
+                    ahead.add(pool.submit(() -> parseSlice(db, header, slice, linesBefore, batch, chunkRows)));
+                    if (ahead.size() < window) continue;
+                }
+                if (ahead.isEmpty()) break;
+                Parsed parsed = await(ahead.poll());
+                rejected += parsed.rejectedLines();
+                for (Long line : parsed.rejectedSamples()) {
+                    if (samples.size() < TelemetryCsvReader.MAX_REJECTED_SAMPLES) samples.add(line);
+                }
+                if (!parsed.batch().isEmpty()) sink.accept(parsed.batch(), parsed.bytes());
+                parsed.batch().clear();
+                free.add(parsed.batch());
+            }
+        } finally {
+            ahead.forEach(f -> f.cancel(true));
+        }
+        return new Result(lines, rejected, Collections.unmodifiableList(samples));
+    }
+
+    private Parsed parseSlice(String db, TelemetryCsvReader header, Slice slice, long linesBefore,
+                              TelemetryBatch batch, int chunkRows) throws IOException {
+        long started = System.nanoTime();
+        try (TelemetryCsvReader reader = header.continuation(reader(slice.bytes()), linesBefore)) {
+            int rows = reader.readChunk(batch, chunkRows);
+            metrics.ingest(db, "parse", rows, slice.bytes().length, System.nanoTime() - started);
+            return new Parsed(batch, slice.bytes().length, reader.rejectedLines(), List.copyOf(reader.rejectedSamples()));
+        }
+    }
+
+    private static InputStreamReader reader(byte[] bytes) {
+        return new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8);
+    }
+
+    private static Parsed await(Future<Parsed> parsed) throws IOException {
+        try {
+            return parsed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing upload");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Cuts raw upload bytes after complete lines, with the line terminators of {@link CsvTokenizer}. */
+    private static final class LineSplitter {
+        private final InputStream in;
+        private byte[] buf = new byte[64 * 1024];
+        private int pos;
+        private int limit;
+        private boolean eof;
+
+        LineSplitter(InputStream in) {
+            this.in = in;
+        }
+
+        /** The next {@code maxLines} lines (fewer at the end of the input) with their terminators, or null. */
+        Slice next(int maxLines) throws IOException {
+            int lines = 0;
+            int off = 0;       // relative to pos; fill() moves the buffer
+            int lineStart = 0;
+            while (lines < maxLines) {
+                if (pos + off == limit && !fill()) {
+                    if (off > lineStart) lines++; // last line without terminator
+                    break;
+                }
+                byte b = buf[pos + off++];
+                if (b == '\n' || b == '\r') {
+                    if (b == '\r' && (pos + off < limit || fill()) && buf[pos + off] == '\n') off++;
+                    lines++;
+                    lineStart = off;
+                }
+            }
+            if (off == 0) return null;
+            Slice slice = new Slice(Arrays.copyOfRange(buf, pos, pos + off), lines);
+            pos += off;
+            return slice;
+        }
+
+        private boolean fill() throws IOException {
+            if (eof) return false;
+            int pending = limit - pos;
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, pending);
+                pos = 0;
+                limit = pending;
+            }
+            if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            limit += n;
+            return true;
+        }
+    }
+}
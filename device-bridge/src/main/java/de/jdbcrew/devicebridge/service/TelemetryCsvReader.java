@@ -0,0 +1,136 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Pull-based reader for the final telemetry CSV format (timestamp + metric columns).
+ * Rows are handed out in chunks so callers can flush each chunk to the database
+ * before reading on; memory use depends on the chunk size, not on the file size.
+ * Lines are split by a {@link CsvTokenizer}, which parses values straight from its buffers.
+ */
+public class TelemetryCsvReader implements Closeable {
+
+    static final int MAX_REJECTED_SAMPLES = 20;
+
+    private final Reader reader;
+    private final CountingInputStream counted;
+    private final CsvTokenizer tokenizer;
+    private final int tsIndex;
+    private final int[] colIndex;
+    private final List<Long> rejectedSamples = new ArrayList<>();
+    private long lineNumber;
+    private long rejectedLines;
+    private boolean eof;
+
+    /**
+     * Reads the header line. Throws {@link IllegalArgumentException} if a required column is missing.
+     */
+    public TelemetryCsvReader(InputStream in) throws IOException {
+        this(new CountingInputStream(in));
+    }
+
+    private TelemetryCsvReader(CountingInputStream in) throws IOException {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8), in);
+    }
+
+    public TelemetryCsvReader(Reader in) throws IOException {
+        this(in, null);
+    }
+
+    private TelemetryCsvReader(Reader in, CountingInputStream counted) throws IOException {
+        this.reader = in;
+        this.counted = counted;
+        this.tokenizer = new CsvTokenizer(in);
+        this.colIndex = new int[TelemetryBatch.COLUMN_COUNT];
+        if (!tokenizer.nextLine()) {
+            this.eof = true;
+            this.tsIndex = -1;
+            return;
+        }
+        lineNumber = 1;
+        Map<String, Integer> idx = new HashMap<>();
+        for (int i = 0; i < tokenizer.fieldCount(); i++) idx.put(tokenizer.stringAt(i).toLowerCase(Locale.ROOT), i);
+        if (!idx.containsKey("timestamp")) throw new IllegalArgumentException("Fehlende Spalte: timestamp");
+        this.tsIndex = idx.get("timestamp");
+        for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+            String col = TelemetryBatch.COLUMNS.get(c);
+            Integer i = idx.get(col);
+            if (i == null) throw new IllegalArgumentException("Fehlende Spalte: " + col);
+            colIndex[c] = i;
+        }
+    }
+
+    // headerless continuation of the file whose header was read by {@code header}
+    private TelemetryCsvReader(Reader in, TelemetryCsvReader header, long linesBefore) {
+        this.reader = in;
+        this.counted = null;
+        this.tokenizer = new CsvTokenizer(in);
+        this.tsIndex = header.tsIndex;
+        this.colIndex = header.colIndex;
+        this.lineNumber = linesBefore;
+        this.eof = header.tsIndex < 0;
+    }
+
+    /**
+     * Reader for a later slice of the same file, starting at a line boundary after {@code linesBefore} lines
+     * (header included); uses this reader's column mapping, line numbers continue from there.
+     * See {@link TelemetryCsvPipeline}.
+     */
+    public TelemetryCsvReader continuation(Reader in, long linesBefore) {
+        return new TelemetryCsvReader(in, this, linesBefore);
+    }
+
+    /**
+     * Appends up to {@code maxRows} parsed rows to {@code out}.
+     *
+     * @return number of rows appended; 0 once the input is exhausted
+     */
+    public int readChunk(TelemetryBatch out, int maxRows) throws IOException {
+        int added = 0;
+        while (!eof && added < maxRows) {
+            if (!tokenizer.nextLine()) { eof = true; break; }
+            lineNumber++;
+            if (tokenizer.isBlankLine()) continue;
+            long ts = tokenizer.epochMillisAt(tsIndex);
+            if (ts == CsvTokenizer.NO_TIMESTAMP) {
+                reject();
+                continue;
+            }
+            int row = out.addRow(ts);
+            for (int c = 0; c < colIndex.length; c++) out.set(row, c, tokenizer.doubleAt(colIndex[c]));
+            added++;
+        }
+        return added;
+    }
+
+    /** Lines read so far, including the header. */
+    public long lineNumber() { return lineNumber; }
+
+    /**
+     * Input bytes consumed so far, including what the decoder has read ahead of the current line;
+     * 0 when constructed from a {@link Reader}.
+     */
+    public long bytesRead() { return counted != null ? counted.count : 0; }
+
+    /** Non-blank lines that were skipped because no timestamp could be parsed. */
+    public long rejectedLines() { return rejectedLines; }
+
+    /** Line numbers of the first rejected lines (capped). */
+    public List<Long> rejectedSamples() { return Collections.unmodifiableList(rejectedSamples); }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void reject() {
+        rejectedLines++;
+        if (rejectedSamples.size() < MAX_REJECTED_SAMPLES) rejectedSamples.add(lineNumber);
+    }
+}
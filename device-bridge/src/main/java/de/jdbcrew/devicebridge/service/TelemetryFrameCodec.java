@@ -0,0 +1,189 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact little-endian binary format for {@link TelemetryBatch} rows, used by the ingest spool and accepted
+ * by {@code POST /upload} as {@value #MEDIA_TYPE} (see {@link TelemetryFrameReader}).
+ * <pre>
+ * stream  := header frame*
+ * header  := magic "TLM1" | u16 version | u16 columnCount | (u16 nameLength | UTF-8 name)*
+ * frame   := i32 payloadLength | i32 crc32c(payload) | payload
+ * payload := i32 rows | i64 epochMillis[rows] | per column: i64 nullMask[(rows + 63) / 64] | f64 value per non-null row
+ * </pre>
+ * A frame is only accepted when its length and checksum match, so a torn write at the end of a file is detected.
+ */
+public final class TelemetryFrameCodec {
+
+    public static final String MEDIA_TYPE = "application/x-telemetry-frames";
+    public static final int MAGIC = 0x314D4C54; // "TLM1" in little-endian byte order
+    public static final int VERSION = 1;
+    public static final int FRAME_HEADER_BYTES = 8;
+    private static final int MAX_FRAME_BYTES = 64 << 20;
+
+    /** A frame or header that is truncated, fails its checksum or carries an infinite value. */
+    public static class CorruptFrameException extends IOException {
+        public CorruptFrameException(String message) {
+            super(message);
+        }
+    }
+
+    private TelemetryFrameCodec() {}
+
+    /** Stream header for the given columns (names as in {@link TelemetryBatch#COLUMNS}). */
+    public static ByteBuffer header(List<String> columns) {
+        int size = 8;
+        byte[][] names = new byte[columns.size()][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = columns.get(i).getBytes(StandardCharsets.UTF_8);
+            size += 2 + names[i].length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putShort((short) VERSION).putShort((short) names.length);
+        for (byte[] name : names) buf.putShort((short) name.length).put(name);
+        return buf.flip();
+    }
+
+    /**
+     * Reads a stream header.
+     *
+     * @return for each stream column the index in {@link TelemetryBatch#COLUMNS}, or -1 if unknown
+     */
+    public static int[] readHeader(ReadableByteChannel in) throws IOException {
+        ByteBuffer fixed = readFully(in, ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN), true);
+        if (fixed == null || fixed.getInt() != MAGIC) throw new CorruptFrameException("Kein Telemetrie-Binärformat");
+        int version = Short.toUnsignedInt(fixed.getShort());
+        if (version != VERSION) throw new CorruptFrameException("Nicht unterstützte Version: " + version);
+        int[] columns = new int[Short.toUnsignedInt(fixed.getShort())];
+        ByteBuffer len = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < columns.length; i++) {
+            readFully(in, len.clear(), false);
+            ByteBuffer name = readFully(in, ByteBuffer.allocate(Short.toUnsignedInt(len.getShort())), false);
+            columns[i] = TelemetryBatch.columnIndex(StandardCharsets.UTF_8.decode(name).toString());
+        }
+        return columns;
+    }
+
+    /** Encodes rows {@code [from, to)} of a batch as one frame with all {@link TelemetryBatch#COLUMNS}. */
+    public static ByteBuffer encode(TelemetryBatch batch, int from, int to) {
+        int rows = to - from;
+        int words = (rows + 63) >>> 6;
+        int nonNull = 0;
+        for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+            for (int r = from; r < to; r++) if (!batch.isNull(r, c)) nonNull++;
+        }
+        int payload = 4 + rows * 8 + TelemetryBatch.COLUMN_COUNT * words * 8 + nonNull * 8;
+        ByteBuffer buf = ByteBuffer.allocate(FRAME_HEADER_BYTES + payload).order(ByteOrder.LITTLE_ENDIAN);
+        buf.position(FRAME_HEADER_BYTES);
+        buf.putInt(rows);
+        for (int r = from; r < to; r++) buf.putLong(batch.epochMillis(r));
+        long[] mask = new long[words];
+        for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+            Arrays.fill(mask, 0L);
+            for (int r = from; r < to; r++) {
+                if (batch.isNull(r, c)) mask[(r - from) >>> 6] |= 1L << (r - from);
+            }
+            for (long w : mask) buf.putLong(w);
+            for (int r = from; r < to; r++) if (!batch.isNull(r, c)) buf.putDouble(batch.value(r, c));
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), FRAME_HEADER_BYTES, payload);
+        buf.putInt(0, payload).putInt(4, (int) crc.getValue());
+        return buf.flip();
+    }
+
+    /** Largest payload a frame of {@code rows} rows over {@code columns} columns can have (no NULLs). */
+    public static long maxPayloadBytes(int rows, int columns) {
+        long words = (rows + 63L) >>> 6;
+        return 4 + 8L * rows + columns * (8 * words + 8L * rows);
+    }
+
+    /** {@link #readFrame(ReadableByteChannel, ByteBuffer[], int)} with the format's own 64 MiB limit. */
+    public static ByteBuffer readFrame(ReadableByteChannel in, ByteBuffer[] scratch) throws IOException {
+        return readFrame(in, scratch, MAX_FRAME_BYTES);
+    }
+
+    /**
+     * Reads the next frame's payload.
+     *
+     * @param scratch  reused buffer; a larger one is allocated when a frame does not fit
+     * @param maxBytes longest payload accepted, at most 64 MiB
+     * @return the payload (little-endian, positioned at its start), or null at a clean end of stream
+     * @throws CorruptFrameException on a truncated or oversized frame or a checksum mismatch
+     */
+    public static ByteBuffer readFrame(ReadableByteChannel in, ByteBuffer[] scratch, int maxBytes) throws IOException {
+        ByteBuffer head;
+        try {
+            head = readFully(in, ByteBuffer.allocate(FRAME_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN), true);
+        } catch (EOFException e) {
+            throw new CorruptFrameException("Unvollständiger Frame");
+        }
+        if (head == null) return null;
+        int length = head.getInt();
+        int expectedCrc = head.getInt();
+        if (length < 4 || length > Math.min(maxBytes, MAX_FRAME_BYTES)) throw new CorruptFrameException("Ungültige Framelänge: " + length);
+        if (scratch[0] == null || scratch[0].capacity() < length) {
+            scratch[0] = ByteBuffer.allocate(Math.max(length, 64 << 10)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer payload = scratch[0].clear().limit(length);
+        try {
+            readFully(in, payload, false);
+        } catch (EOFException e) {
+            throw new CorruptFrameException("Unvollständiger Frame");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload.array(), 0, length);
+        if ((int) crc.getValue() != expectedCrc) throw new CorruptFrameException("Prüfsumme falsch");
+        return payload;
+    }
+
+    /**
+     * Appends the rows of a frame payload to {@code out}; columns mapped to -1 are skipped. {@code NaN} is
+     * stored as NULL, an infinite value rejects the frame.
+     */
+    public static int decode(ByteBuffer payload, int[] columns, TelemetryBatch out) throws CorruptFrameException {
+        try {
+            int rows = payload.getInt();
+            int words = (rows + 63) >>> 6;
+            if (rows < 0 || (long) rows * 8 + (long) columns.length * words * 8 > payload.remaining()) {
+                throw new CorruptFrameException("Ungültige Zeilenzahl: " + rows);
+            }
+            int first = out.size();
+            for (int r = 0; r < rows; r++) out.addRow(payload.getLong());
+            long[] mask = new long[words];
+            for (int column : columns) {
+                for (int w = 0; w < words; w++) mask[w] = payload.getLong();
+                for (int r = 0; r < rows; r++) {
+                    if ((mask[r >>> 6] & (1L << r)) != 0) continue;
+                    double v = payload.getDouble();
+                    // no target column stores ±Infinity, and it would poison every rollup it reaches
+                    if (Double.isInfinite(v)) throw new CorruptFrameException("Ungültiger Wert in Zeile " + (r + 1) + ": " + v);
+                    if (column >= 0) out.set(first + r, column, v);
+                }
+            }
+            return rows;
+        } catch (BufferUnderflowException e) {
+            throw new CorruptFrameException("Frame kürzer als angegeben");
+        }
+    }
+
+    // Fills buf completely; returns null if the stream ends before the first byte (allowed only when atEndOk)
+    private static ByteBuffer readFully(ReadableByteChannel in, ByteBuffer buf, boolean atEndOk) throws IOException {
+        while (buf.hasRemaining()) {
+            if (in.read(buf) < 0) {
+                if (atEndOk && buf.position() == 0) return null;
+                throw new EOFException();
+            }
+        }
+        return buf.flip();
+    }
+}
@@ -0,0 +1,110 @@
+package de.jdbcrew.devicebridge.service;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Pull-based reader for binary telemetry uploads: a {@link TelemetryFrameCodec} stream (the spool format),
+ * optionally gzip- or deflate-compressed as announced by the request's {@code Content-Encoding}.
+ * Like {@link TelemetryCsvReader}, rows are handed out in chunks into a reusable {@link TelemetryBatch};
+ * frames are never split, so a chunk may exceed the requested size by up to one frame. Frames are limited to
+ * {@code maxFrameRows} rows, and to the bytes such a frame can take, before anything is decoded: a few KB of
+ * gzip could otherwise expand into millions of all-NULL rows.
+ */
+public class TelemetryFrameReader implements Closeable {
+
+    private final CountingInputStream counted;
+    private final ReadableByteChannel channel;
+    private final int[] columns;
+    private final int maxFrameRows;
+    private final int maxFrameBytes;
+    private final ByteBuffer[] scratch = new ByteBuffer[1];
+    private long rowsRead;
+    private long frames;
+    private boolean eof;
+
+    /**
+     * Reads the stream header. Columns the bridge does not know are skipped, missing ones stay NULL.
+     *
+     * @param contentEncoding {@code gzip}, {@code deflate} (zlib, as in HTTP), {@code identity} or null
+     * @param maxFrameRows    rows one frame may carry; larger frames are rejected as corrupt
+     * @throws IllegalArgumentException for other encodings, see {@link #supportsEncoding}
+     * @throws TelemetryFrameCodec.CorruptFrameException if the input is no telemetry frame stream
+     */
+    public TelemetryFrameReader(InputStream in, String contentEncoding, int maxFrameRows) throws IOException {
+        if (!supportsEncoding(contentEncoding)) {
+            throw new IllegalArgumentException("Nicht unterstützte Kodierung: " + contentEncoding);
+        }
+        this.counted = new CountingInputStream(in);
+        this.channel = Channels.newChannel(decoded(counted, contentEncoding));
+        this.columns = TelemetryFrameCodec.readHeader(channel);
+        this.maxFrameRows = Math.max(1, maxFrameRows);
+        this.maxFrameBytes = (int) Math.min(Integer.MAX_VALUE,
+                TelemetryFrameCodec.maxPayloadBytes(this.maxFrameRows, columns.length));
+    }
+
+    public static boolean supportsEncoding(String contentEncoding) {
+        return switch (normalize(contentEncoding)) {
+            case "", "identity", "gzip", "x-gzip", "deflate" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Appends whole frames to {@code out} until it holds at least {@code minRows} rows or the stream ends.
+     *
+     * @return number of rows appended; 0 once the input is exhausted
+     * @throws TelemetryFrameCodec.CorruptFrameException on a truncated or oversized frame or checksum mismatch
+     */
+    public int readChunk(TelemetryBatch out, int minRows) throws IOException {
+        int added = 0;
+        while (!eof && added < minRows) {
+            ByteBuffer payload = TelemetryFrameCodec.readFrame(channel, scratch, maxFrameBytes);
+            if (payload == null) {
+                eof = true;
+                break;
+            }
+            int rows = payload.getInt(payload.position());
+            if (rows > maxFrameRows) {
+                throw new TelemetryFrameCodec.CorruptFrameException(
+                        "Frame mit " + rows + " Zeilen, höchstens " + maxFrameRows + " erlaubt");
+            }
+            added += TelemetryFrameCodec.decode(payload, columns, out);
+            frames++;
+        }
+        rowsRead += added;
+        return added;
+    }
+
+    public long rowsRead() { return rowsRead; }
+
+    public long framesRead() { return frames; }
+
+    /** Request body bytes consumed so far, before decompression. */
+    public long bytesRead() { return counted.count; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static InputStream decoded(InputStream in, String contentEncoding) throws IOException {
+        return switch (normalize(contentEncoding)) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(in, 64 * 1024);
+            case "deflate" -> new InflaterInputStream(new BufferedInputStream(in, 64 * 1024));
+            default -> in;
+        };
+    }
+
+    private static String normalize(String contentEncoding) {
+        return contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,219 @@
+package de.jdbcrew.devicebridge.service;
+
+import de.jdbcrew.devicebridge.dto.LiveTelemetry;
+import de.jdbcrew.devicebridge.dto.TelemetryRecord;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed telemetry to server-sent event subscribers ({@code GET /api/db/{db}/stream}).
+ * <p>
+ * {@link DbService#importTelemetry} publishes every batch after its commit; without subscribers for the target
+ * that is a map lookup. Each subscriber keeps a ring of its newest {@code maxRows} rows, projected to its columns,
+ * so its memory is fixed no matter how fast rows arrive or how slowly it reads: older unsent rows are overwritten
+ * and counted as {@code dropped}. A ticker hands a subscriber's ring to a sender thread at most once per interval
+ * and only if the previous event has been written, so a slow connection coalesces instead of queueing.
+ */
+@Service
+public class TelemetryStream {
+
+    public static final long MIN_INTERVAL_MILLIS = 250;
+    public static final int MAX_ROWS_PER_EVENT = 1000;
+    private static final long TICK_MILLIS = 50;
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    /** The subscriber limit ({@code stream.max-subscribers}) is reached. */
+    public static class TooManySubscribersException extends IllegalStateException {
+        public TooManySubscribersException(int max) {
+            super("Too many stream subscribers (max " + max + ")");
+        }
+    }
+
+    private final Map<String, List<Subscriber>> byDb = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final int maxSubscribers;
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService senders;
+
+    public TelemetryStream(@Value("${stream.max-subscribers:256}") int maxSubscribers,
+                           @Value("${stream.send-threads:2}") int sendThreads) {
+        this.maxSubscribers = Math.max(1, maxSubscribers);
+        // own ticker: the shared @Scheduled thread also runs spool replays, which can take a while
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stream-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger n = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, sendThreads), r -> {
+            Thread t = new Thread(r, "stream-sender-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+        senders.shutdownNow();
+        byDb.values().forEach(subs -> subs.forEach(s -> s.emitter.complete()));
+    }
+
+    /**
+     * Opens a stream of the target's new telemetry rows.
+     *
+     * @param columns        indexes into {@link TelemetryBatch#COLUMNS}
+     * @param intervalMillis minimum time between two events (at least {@value #MIN_INTERVAL_MILLIS})
+     * @param maxRows        newest rows kept per event (at most {@value #MAX_ROWS_PER_EVENT})
+     * @throws TooManySubscribersException when the subscriber limit is reached
+     */
+    public SseEmitter subscribe(String dbKey, int[] columns, long intervalMillis, int maxRows) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new TooManySubscribersException(maxSubscribers);
+        }
+        String key = dbKey.toLowerCase(Locale.ROOT);
+        SseEmitter emitter = new SseEmitter(0L); // no timeout; ends when the client goes away
+        Subscriber s = new Subscriber(key, emitter, columns.clone(),
+                TimeUnit.MILLISECONDS.toNanos(Math.max(MIN_INTERVAL_MILLIS, intervalMillis)),
+                Math.max(1, Math.min(MAX_ROWS_PER_EVENT, maxRows)));
+        emitter.onCompletion(s::close);
+        emitter.onTimeout(s::close);
+        emitter.onError(e -> s.close());
+        byDb.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(s);
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    /** Offers freshly committed rows to the target's subscribers; the batch may be reused once this returns. */
+    public void publish(String dbKey, TelemetryBatch batch) {
+        List<Subscriber> subs = byDb.get(dbKey.toLowerCase(Locale.ROOT));
+        if (subs == null || subs.isEmpty() || batch.isEmpty()) return;
+        for (Subscriber s : subs) s.offer(batch);
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (List<Subscriber> subs : byDb.values()) {
+            for (Subscriber s : subs) s.dispatch(now);
+        }
+    }
+
+    private final class Subscriber {
+        private final String db;
+        private final SseEmitter emitter;
+        private final int[] columns;
+        private final long intervalNanos;
+        // ring of the newest unsent rows, guarded by this
+        private final long[] ts;
+        private final double[][] values;
+        private int next;
+        private int size;
+        private long dropped;
+        private boolean sending;
+        private boolean closed;
+        private long nextEventAt;
+        private long lastWriteAt = System.nanoTime();
+
+        Subscriber(String db, SseEmitter emitter, int[] columns, long intervalNanos, int capacity) {
+            this.db = db;
+            this.emitter = emitter;
+            this.columns = columns;
+            this.intervalNanos = intervalNanos;
+            this.ts = new long[capacity];
+            this.values = new double[capacity][columns.length];
+        }
+
+        synchronized void offer(TelemetryBatch batch) {
+            if (closed) return;
+            int capacity = ts.length;
+            int from = Math.max(0, batch.size() - capacity);
+            dropped += from;
+            for (int r = from; r < batch.size(); r++) {
+                if (size == capacity) dropped++;
+                else size++;
+                ts[next] = batch.epochMillis(r);
+                double[] row = values[next];
+                for (int c = 0; c < columns.length; c++) {
+                    row[c] = batch.isNull(r, columns[c]) ? Double.NaN : batch.value(r, columns[c]);
+                }
+                next = (next + 1) % capacity;
+            }
+        }
+
+        // runs on the ticker; at most one send per subscriber is in flight
+        void dispatch(long now) {
+            LiveTelemetry event = null;
+            synchronized (this) {
+                if (closed || sending) return;
+                if (size > 0 && now - nextEventAt >= 0) {
+                    event = drain();
+                    nextEventAt = now + intervalNanos;
+                } else if (now - lastWriteAt < HEARTBEAT_NANOS) {
+                    return;
+                }
+                sending = true;
+            }
+            LiveTelemetry payload = event;
+            senders.execute(() -> send(payload));
+        }
+
+        private LiveTelemetry drain() {
+            List<TelemetryRecord> rows = new ArrayList<>(size);
+            int capacity = ts.length;
+            for (int i = 0, slot = (next - size + capacity) % capacity; i < size; i++, slot = (slot + 1) % capacity) {
+                rows.add(new TelemetryRecord(null, ts[slot], columns, values[slot].clone()));
+            }
+            LiveTelemetry event = new LiveTelemetry(rows, dropped);
+            size = 0;
+            dropped = 0;
+            return event;
+        }
+
+        private void send(LiveTelemetry event) {
+            try {
+                // a comment line keeps idle connections open and detects clients that went away
+                emitter.send(event != null
+                        ? SseEmitter.event().name("telemetry").data(event, MediaType.APPLICATION_JSON)
+                        : SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException e) {
+                close(); // the container completes the async request itself
+            } finally {
+                synchronized (this) {
+                    sending = false;
+                    lastWriteAt = System.nanoTime();
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+            }
+            List<Subscriber> subs = byDb.get(db);
+            if (subs != null) subs.remove(this);
+            subscribers.decrementAndGet();
+        }
+    }
+}
@@ -11,9 +11,9 @@ CREATE TABLE IF NOT EXISTS sensors (
   id        BIGINT UNSIGNED NOT NULL AUTO_INCREMENT,
   device_id BIGINT UNSIGNED NOT NULL,
   kind      VARCHAR(32)     NOT NULL,   -- 'servo','laser','led','imu','env','power','camera'
-  label     VARCHAR(255)     NULL,
+  label     VARCHAR(255)    NOT NULL DEFAULT '',  -- '' = ohne Label
   PRIMARY KEY (id),
-  KEY idx_sensors_device (device_id),
+  UNIQUE KEY uk_sensors_device_kind_label (device_id, kind, label),  -- deckt auch fk_sensors_device ab
   CONSTRAINT fk_sensors_device
     FOREIGN KEY (device_id) REFERENCES devices(id)
     ON DELETE CASCADE
@@ -67,6 +67,46 @@ CREATE TABLE IF NOT EXISTS telemetry (
   KEY idx_telemetry_ts (ts)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- Rollups der Telemetrie-Spalten / Messgrößen in 1m, 1h und 1d (res = Bucket-Breite in ms),
+-- vom Import in derselben Transaktion wie die Rohdaten gepflegt
+CREATE TABLE IF NOT EXISTS telemetry_rollup (
+  res       INT UNSIGNED    NOT NULL,
+  col       VARCHAR(32)     NOT NULL,
+  bucket_ts BIGINT          NOT NULL,  -- Bucket-Beginn, epoch millis
+  cnt       BIGINT UNSIGNED NOT NULL,
+  sum_val   DOUBLE          NOT NULL,
+  min_val   DOUBLE          NOT NULL,
+  max_val   DOUBLE          NOT NULL,
+  last_ts   BIGINT          NOT NULL,
+  last_val  DOUBLE          NOT NULL,
+  PRIMARY KEY (res, col, bucket_ts)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS measurement_rollup (
+  res       INT UNSIGNED    NOT NULL,
+  metric    VARCHAR(64)     NOT NULL,
+  bucket_ts BIGINT          NOT NULL,
+  cnt       BIGINT UNSIGNED NOT NULL,
+  sum_val   DOUBLE          NOT NULL,
+  min_val   DOUBLE          NOT NULL,
+  max_val   DOUBLE          NOT NULL,
+  last_ts   BIGINT          NOT NULL,
+  last_val  DOUBLE          NOT NULL,
+  PRIMARY KEY (res, metric, bucket_ts)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Sync-Stand je Quelle und Tabelle (POST /api/admin/sync): höchste übertragene Quell-id,
+-- in derselben Transaktion wie die kopierten Zeilen fortgeschrieben
+CREATE TABLE IF NOT EXISTS sync_checkpoint (
+  source      VARCHAR(64)     NOT NULL,  -- dbKey der Quelle
+  tbl         VARCHAR(32)     NOT NULL,  -- 'telemetry' | 'measurements'
+  last_id     BIGINT UNSIGNED NOT NULL,
+  last_ts     BIGINT              NULL,  -- ts der Zeile last_id, epoch millis
+  rows_synced BIGINT UNSIGNED NOT NULL,
+  updated_at  BIGINT          NOT NULL,  -- epoch millis
+  PRIMARY KEY (source, tbl)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- Beispiel-Stammdaten (optional)
 INSERT IGNORE INTO devices (name) VALUES ('raspi-01');
 
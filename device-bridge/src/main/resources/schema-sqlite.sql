@@ -9,7 +9,7 @@ CREATE TABLE IF NOT EXISTS sensors (
   id        INTEGER PRIMARY KEY AUTOINCREMENT,
   device_id INTEGER NOT NULL,
   kind      TEXT NOT NULL,   -- 'servo','laser','led','imu','env','power','camera'
-  label     TEXT,            -- frei: 'imu1', 'servo-rail', ...
+  label     TEXT NOT NULL DEFAULT '',  -- frei: 'imu1', 'servo-rail', ...; '' = ohne Label
   FOREIGN KEY (device_id) REFERENCES devices(id)
 );
 
@@ -32,6 +32,21 @@ CREATE TABLE IF NOT EXISTS measurements (
 CREATE INDEX IF NOT EXISTS idx_meas_sensor_ts ON measurements(sensor_id, ts);
 CREATE INDEX IF NOT EXISTS idx_meas_metric_ts ON measurements(metric, ts);
 
+-- Ein Sensor je (Gerät, kind, label); ohne Label steht '' drin, damit auch solche Sensoren eindeutig sind.
+-- Ältere Dateien ohne den Schlüssel: Labels vereinheitlichen, Duplikate auf den ältesten Sensor zusammenlegen.
+UPDATE sensors SET label = '' WHERE label IS NULL;
+UPDATE measurements SET sensor_id = (
+  SELECT MIN(k.id) FROM sensors s JOIN sensors k
+    ON k.device_id = s.device_id AND k.kind = s.kind AND k.label = s.label
+  WHERE s.id = measurements.sensor_id)
+WHERE sensor_id IN (
+  SELECT s.id FROM sensors s JOIN sensors k
+    ON k.device_id = s.device_id AND k.kind = s.kind AND k.label = s.label AND k.id < s.id);
+DELETE FROM sensors WHERE id IN (
+  SELECT s.id FROM sensors s JOIN sensors k
+    ON k.device_id = s.device_id AND k.kind = s.kind AND k.label = s.label AND k.id < s.id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_sensors_device_kind_label ON sensors(device_id, kind, label);
+
 -- Beispiel-Stammdaten (optional)
 INSERT OR IGNORE INTO devices (name) VALUES ('raspi-01');
 
@@ -60,6 +75,46 @@ CREATE TABLE IF NOT EXISTS telemetry (
 );
 CREATE INDEX IF NOT EXISTS idx_telemetry_ts ON telemetry(ts);
 
+-- Rollups der Telemetrie-Spalten / Messgrößen in 1m, 1h und 1d (res = Bucket-Breite in ms),
+-- vom Import in derselben Transaktion wie die Rohdaten gepflegt
+CREATE TABLE IF NOT EXISTS telemetry_rollup (
+  res       INTEGER NOT NULL,
+  col       TEXT    NOT NULL,
+  bucket_ts INTEGER NOT NULL,  -- Bucket-Beginn, epoch millis
+  cnt       INTEGER NOT NULL,
+  sum_val   REAL    NOT NULL,
+  min_val   REAL    NOT NULL,
+  max_val   REAL    NOT NULL,
+  last_ts   INTEGER NOT NULL,
+  last_val  REAL    NOT NULL,
+  PRIMARY KEY (res, col, bucket_ts)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS measurement_rollup (
+  res       INTEGER NOT NULL,
+  metric    TEXT    NOT NULL,
+  bucket_ts INTEGER NOT NULL,
+  cnt       INTEGER NOT NULL,
+  sum_val   REAL    NOT NULL,
+  min_val   REAL    NOT NULL,
+  max_val   REAL    NOT NULL,
+  last_ts   INTEGER NOT NULL,
+  last_val  REAL    NOT NULL,
+  PRIMARY KEY (res, metric, bucket_ts)
+) WITHOUT ROWID;
+
+-- Sync-Stand je Quelle und Tabelle (POST /api/admin/sync): höchste übertragene Quell-id,
+-- in derselben Transaktion wie die kopierten Zeilen fortgeschrieben
+CREATE TABLE IF NOT EXISTS sync_checkpoint (
+  source      TEXT    NOT NULL,  -- dbKey der Quelle
+  tbl         TEXT    NOT NULL,  -- 'telemetry' | 'measurements'
+  last_id     INTEGER NOT NULL,
+  last_ts     INTEGER,           -- ts der Zeile last_id, epoch millis
+  rows_synced INTEGER NOT NULL,
+  updated_at  INTEGER NOT NULL,  -- epoch millis
+  PRIMARY KEY (source, tbl)
+) WITHOUT ROWID;
+
 -- Beispiel-Sensoren für raspi-01
 INSERT OR IGNORE INTO sensors (device_id, kind, label) SELECT id, 'servo',  'servo-rail'   FROM devices WHERE name='raspi-01';
 INSERT OR IGNORE INTO sensors (device_id, kind, label) SELECT id, 'laser',  'laser-module' FROM devices WHERE name='raspi-01';
@@ -11,7 +11,7 @@ CREATE TABLE IF NOT EXISTS sensors (
   id        INTEGER PRIMARY KEY AUTOINCREMENT,
   device_id INTEGER NOT NULL,
   kind      TEXT NOT NULL,   -- 'servo','laser','led','imu','env','power','camera'
-  label     TEXT,
+  label     TEXT NOT NULL DEFAULT '',
   FOREIGN KEY (device_id) REFERENCES devices(id)
 );
 
@@ -33,6 +33,21 @@ CREATE TABLE IF NOT EXISTS measurements (
 CREATE INDEX IF NOT EXISTS idx_meas_sensor_ts ON measurements(sensor_id, ts);
 CREATE INDEX IF NOT EXISTS idx_meas_metric_ts ON measurements(metric, ts);
 
+-- One sensor per (device, kind, label); no label is '' so unlabeled sensors are covered by the key too.
+-- Files created before the key: normalize labels and fold duplicates into the oldest sensor first.
+UPDATE sensors SET label = '' WHERE label IS NULL;
+UPDATE measurements SET sensor_id = (
+  SELECT MIN(k.id) FROM sensors s JOIN sensors k
+    ON k.device_id = s.device_id AND k.kind = s.kind AND k.label = s.label
+  WHERE s.id = measurements.sensor_id)
+WHERE sensor_id IN (
+  SELECT s.id FROM sensors s JOIN sensors k
+    ON k.device_id = s.device_id AND k.kind = s.kind AND k.label = s.label AND k.id < s.id);
+DELETE FROM sensors WHERE id IN (
+  SELECT s.id FROM sensors s JOIN sensors k
+    ON k.device_id = s.device_id AND k.kind = s.kind AND k.label = s.label AND k.id < s.id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_sensors_device_kind_label ON sensors(device_id, kind, label);
+
 -- Optional seed for local dev
 INSERT OR IGNORE INTO devices (name) VALUES ('raspi-01');
 
@@ -61,3 +76,43 @@ CREATE TABLE IF NOT EXISTS telemetry (
 );
 
 CREATE INDEX IF NOT EXISTS idx_telemetry_ts ON telemetry(ts);
+
+-- Rollups of telemetry columns / measurement metrics at 1m, 1h and 1d (res = bucket width in ms),
+-- maintained by the importer in the same transaction as the raw rows
+CREATE TABLE IF NOT EXISTS telemetry_rollup (
+  res       INTEGER NOT NULL,
+  col       TEXT    NOT NULL,
+  bucket_ts INTEGER NOT NULL,  -- bucket start, epoch millis
+  cnt       INTEGER NOT NULL,
+  sum_val   REAL    NOT NULL,
+  min_val   REAL    NOT NULL,
+  max_val   REAL    NOT NULL,
+  last_ts   INTEGER NOT NULL,
+  last_val  REAL    NOT NULL,
+  PRIMARY KEY (res, col, bucket_ts)
+) WITHOUT ROWID;
+
+CREATE TABLE IF NOT EXISTS measurement_rollup (
+  res       INTEGER NOT NULL,
+  metric    TEXT    NOT NULL,
+  bucket_ts INTEGER NOT NULL,
+  cnt       INTEGER NOT NULL,
+  sum_val   REAL    NOT NULL,
+  min_val   REAL    NOT NULL,
+  max_val   REAL    NOT NULL,
+  last_ts   INTEGER NOT NULL,
+  last_val  REAL    NOT NULL,
+  PRIMARY KEY (res, metric, bucket_ts)
+) WITHOUT ROWID;
+
+-- Sync position per source and table (POST /api/admin/sync): highest copied source id,
+-- advanced in the same transaction as the copied rows
+CREATE TABLE IF NOT EXISTS sync_checkpoint (
+  source      TEXT    NOT NULL,  -- source dbKey
+  tbl         TEXT    NOT NULL,  -- 'telemetry' | 'measurements'
+  last_id     INTEGER NOT NULL,
+  last_ts     INTEGER,           -- ts of row last_id, epoch millis
+  rows_synced INTEGER NOT NULL,
+  updated_at  INTEGER NOT NULL,  -- epoch millis
+  PRIMARY KEY (source, tbl)
+) WITHOUT ROWID;
@@ -10,8 +10,9 @@ const CONFIG = {
     download:(db) => `/api/db/${db}/download`,                 // GET (stream; Content-Length empfohlen)
     relocate:(from,to) => `/api/admin/relocate?from=${from}&to=${to}`, // POST
     sync:    (db) => `/api/admin/sync?db=${db}`,               // POST
-    data:    (db, f) => `/api/db/${db}/data${f ? `?${encodeURIComponent(f)}`: ''}`, // GET JSON
-    schema:  (db) => `/api/db/${db}/schema`                    // GET JSON
+    data:    (db, f) => `/api/db/${db}/data${f ? `?filter=${encodeURIComponent(f)}`: ''}`, // GET JSON
+    schema:  (db) => `/api/db/${db}/schema`,                   // GET JSON
+    stream:  (db) => `/api/db/${db}/stream?interval=1000&maxRows=200` // GET text/event-stream
   },
   headers: () => ({ /* z.B. Authorization: 'Bearer …' */ })
 };
@@ -67,7 +68,8 @@ $('btnUpload').onclick = () => {
   Object.entries(CONFIG.headers()).forEach(([k,v])=> xhr.setRequestHeader(k,v));
   xhr.upload.onprogress = (e) => setProgress($('uploadBar'), $('uploadInfo'), e.loaded, e.total);
   xhr.onload = () => {
-    if (xhr.status >= 200 && xhr.status < 300) toast('Upload erfolgreich');
+    if (xhr.status === 202) toast('DB nicht erreichbar – Daten zwischengespeichert');
+    else if (xhr.status >= 200 && xhr.status < 300) toast('Upload erfolgreich');
     else toast('Upload fehlgeschlagen: ' + xhr.status, false);
     setProgress($('uploadBar'), $('uploadInfo'), 0, 0);
     $('uploadBar').style.width = '0%'; $('uploadInfo').textContent='0%';
@@ -90,7 +92,7 @@ $('btnDownload').onclick = () => {
       const blob = xhr.response;
       const a = document.createElement('a');
       a.href = URL.createObjectURL(blob);
-      a.download = `export-${db}.bin`;
+      a.download = `export-${db}.csv`;
       document.body.appendChild(a); a.click(); a.remove();
       URL.revokeObjectURL(a.href);
       toast('Download bereit');
@@ -163,6 +165,33 @@ $('btnLoadData').onclick = async () => {
   }
 };
 
+// Live-Ansicht: neue Zeilen kommen per Server-Sent Events nach jedem Import, statt /data neu zu laden.
+// EventSource kann keine eigenen Header senden (CONFIG.headers gilt hier nicht).
+const LIVE_MAX_ROWS = 200;
+let live = null;
+function stopLive(){
+  if (live) { live.close(); live = null; }
+  $('btnLive').textContent = 'Live starten';
+}
+$('btnLive').onclick = () => {
+  if (live) return stopLive();
+  const db = $('dbSelect').value;
+  live = new EventSource(CONFIG.BASE + CONFIG.EP.stream(db));
+  live.addEventListener('telemetry', (e) => {
+    const ev = JSON.parse(e.data);
+    lastData = [...ev.rows.reverse(), ...lastData].slice(0, LIVE_MAX_ROWS);
+    renderTable(lastData);
+    if (ev.dropped) $('stats').textContent += ` · ${ev.dropped} Zeilen zusammengefasst`;
+  });
+  live.onerror = () => {
+    // EventSource verbindet sich selbst neu; nur ein endgültiger Abbruch beendet die Live-Ansicht
+    if (live && live.readyState === EventSource.CLOSED) { stopLive(); toast('Live-Verbindung beendet', false); }
+  };
+  $('btnLive').textContent = 'Live stoppen';
+  toast('Live-Ansicht aktiv');
+};
+$('dbSelect').addEventListener('change', stopLive);
+
 function renderSchemaInfo(schema) {
   const el = $('schemaOutput');
   if (!el) return;
@@ -173,7 +202,8 @@ function renderSchemaInfo(schema) {
   const lines = [];
   for (const entry of schema) {
     const tableName = entry.table || entry.name || 'unbekannt';
-    lines.push(`Tabelle: ${tableName}`);
+    const rows = entry.rowEstimate !== null && entry.rowEstimate !== undefined ? ` (~${entry.rowEstimate} Zeilen)` : '';
+    lines.push(`Tabelle: ${tableName}${rows}`);
     const columns = Array.isArray(entry.columns) ? entry.columns : [];
     if (!columns.length) {
       lines.push('  • (keine Spalten gefunden)');
@@ -182,7 +212,7 @@ function renderSchemaInfo(schema) {
       const colName = col.name ?? '(ohne Name)';
       const type = col.type ? ` ${col.type}` : '';
       const notNull = Number(col.notnull) === 1 ? ' NOT NULL' : '';
-      const pk = Number(col.pk) === 1 ? ' PRIMARY KEY' : '';
+      const pk = Number(col.pk) > 0 ? ' PRIMARY KEY' : '';
       const defaultVal = col.dflt_value !== null && col.dflt_value !== undefined && col.dflt_value !== ''
         ? ` DEFAULT ${col.dflt_value}`
         : '';
@@ -2,113 +2,480 @@ package de.jdbcrew.devicebridge.controller;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import de.jdbcrew.devicebridge.service.DbService;
+import de.jdbcrew.devicebridge.service.TelemetryBatch;
+import de.jdbcrew.devicebridge.service.TelemetryFrameCodec;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest(properties = "spring.datasource.url=jdbc:sqlite:target/test.db")
+@SpringBootTest(properties = "ingest.chunk-rows=2")
 @AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
 class DbControllerTest {
 
+    static final String HEADER = "timestamp,servo10_y_deg,servo11_x_deg,led12_pct,led13_pct,led14_pct,led15_pct,"
+            + "temp_c,press_hpa,hum_perc,mag_x,mag_y,mag_z,accel_x,accel_y,accel_z,gyro_x,gyro_y,gyro_z\n";
+
     @Autowired
     private MockMvc mockMvc;
 
     @Autowired
-    private DbService dbService;
+    private Map<String, JdbcTemplate> jdbcTemplates;
 
     @Autowired
     private ObjectMapper objectMapper;
 
     @BeforeEach
     void cleanDatabase() {
-        for (String db : dbService.supportedDatabases()) {
-            dbService.deleteItems(db);
+        for (String db : List.of("db3", "dblocal")) {
+            jdbcTemplates.get(db).update("DELETE FROM telemetry");
+            jdbcTemplates.get(db).update("DELETE FROM telemetry_rollup");
         }
     }
 
     @Test
     void uploadStoresDataAndDataEndpointReturnsRows() throws Exception {
-        MockMultipartFile file = new MockMultipartFile(
-                "file",
-                "items.csv",
-                MediaType.TEXT_PLAIN_VALUE,
-                "Alpha\nBeta\n".getBytes(StandardCharsets.UTF_8)
-        );
+        MockMultipartFile file = csv(HEADER
+                + "2024-05-01T10:00:00Z,1,2,3,4,5,6,21.5,1013.2,40,0,0,0,0,0,9.81,0,0,0\n"
+                + "2024-05-01T10:00:01Z,1,2,3,4,5,6,21.7,1013.1,41,0,0,0,0,0,9.81,0,0,0\n");
 
-        mockMvc.perform(multipart("/api/db/{db}/upload", "db1").file(file))
-                .andExpect(status().isCreated());
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(file))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.rowsImported").value(2));
 
-        MvcResult result = mockMvc.perform(get("/api/db/{db}/data", "db1"))
+        MvcResult result = mockMvc.perform(get("/api/db/{db}/data", "db3"))
                 .andExpect(status().isOk())
                 .andReturn();
 
         List<Map<String, Object>> rows = readRows(result);
         assertThat(rows).hasSize(2);
-        assertThat(rows).allMatch(row -> row.containsKey("id") && row.containsKey("name"));
-        assertThat(rows).extracting(row -> row.get("name")).containsExactly("Alpha", "Beta");
+        assertThat(rows).allMatch(row -> row.containsKey("id") && row.containsKey("ts"));
+        assertThat(rows).extracting(row -> row.get("temp_c")).containsExactly(21.7, 21.5);
     }
 
     @Test
-    void dataEndpointAppliesFilter() throws Exception {
-        dbService.replaceItems("db3", List.of("Alpha", "Beta", "Gamma"));
+    void dataEndpointFiltersProjectsAndPaginates() throws Exception {
+        StringBuilder body = new StringBuilder(HEADER);
+        for (int i = 0; i < 5; i++) {
+            body.append("2024-05-01T10:00:0").append(i).append("Z,1,2,3,4,5,6,").append(20 + i).append(",1013,40,0,0,0,0,0,9.81,0,0,0\n");
+        }
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(csv(body.toString())))
+                .andExpect(status().isCreated());
 
-        MvcResult result = mockMvc.perform(get("/api/db/{db}/data", "db3").param("filter", "name=Beta"))
+        MvcResult first = mockMvc.perform(get("/api/db/{db}/data", "db3")
+                        .param("filter", "temp_c>=21")
+                        .param("columns", "temp_c")
+                        .param("limit", "2"))
                 .andExpect(status().isOk())
+                .andExpect(header().exists("X-Next-Cursor"))
                 .andReturn();
+        List<Map<String, Object>> rows = readRows(first);
+        assertThat(rows).extracting(row -> row.get("temp_c")).containsExactly(24.0, 23.0);
+        assertThat(rows.get(0)).containsOnlyKeys("id", "ts", "temp_c");
 
-        List<Map<String, Object>> rows = readRows(result);
-        assertThat(rows).hasSize(1);
-        assertThat(rows.get(0)).containsEntry("name", "Beta");
+        MvcResult second = mockMvc.perform(get("/api/db/{db}/data", "db3")
+                        .param("filter", "temp_c>=21")
+                        .param("limit", "2")
+                        .param("cursor", first.getResponse().getHeader("X-Next-Cursor")))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andReturn();
+        assertThat(readRows(second)).extracting(row -> row.get("temp_c")).containsExactly(22.0, 21.0);
+
+        mockMvc.perform(get("/api/db/{db}/data", "db3").param("filter", "temp_c ~ 1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void aggregateReturnsMinMaxAvgLastPerBucket() throws Exception {
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(csv(HEADER
+                        + "2024-05-01T10:00:00Z,,,,,,,20,,,,,,,,,,,\n"
+                        + "2024-05-01T10:00:30Z,,,,,,,22,,,,,,,,,,,\n"
+                        + "2024-05-01T10:01:00Z,,,,,,,30,,,,,,,,,,,\n"
+                        + "2024-05-01T10:01:45Z,,,,,,,26,,,,,,,,,,,\n"
+                        + "2024-05-01T10:01:50Z,,,,,,,,,,,,,,,,,,\n")))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/db/{db}/aggregate", "db3")
+                        .param("columns", "temp_c")
+                        .param("bucket", "1m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bucketMillis").value(60000))
+                .andExpect(jsonPath("$.source").value("rollup:1m"))
+                .andExpect(jsonPath("$.series[0].name").value("temp_c"))
+                .andExpect(jsonPath("$.series[0].buckets.length()").value(2))
+                .andExpect(jsonPath("$.series[0].buckets[0].ts").value(1714557600000L))
+                .andExpect(jsonPath("$.series[0].buckets[0].avg").value(21.0))
+                .andExpect(jsonPath("$.series[0].buckets[0].last").value(22.0))
+                .andExpect(jsonPath("$.series[0].buckets[1].count").value(2))
+                .andExpect(jsonPath("$.series[0].buckets[1].min").value(26.0))
+                .andExpect(jsonPath("$.series[0].buckets[1].max").value(30.0))
+                .andExpect(jsonPath("$.series[0].buckets[1].last").value(26.0));
+
+        // an unaligned range cannot use the rollups and is answered from the raw rows with the same result
+        mockMvc.perform(get("/api/db/{db}/aggregate", "db3")
+                        .param("columns", "temp_c")
+                        .param("bucket", "1m")
+                        .param("from", "2024-05-01T09:59:59Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.source").value("raw"))
+                .andExpect(jsonPath("$.series[0].buckets[1].avg").value(28.0))
+                .andExpect(jsonPath("$.series[0].buckets[1].last").value(26.0));
+
+        mockMvc.perform(get("/api/db/{db}/aggregate", "db3").param("columns", "nope"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void aggregateLastIsTheNewestTimestampNotTheLatestInsert() throws Exception {
+        // newer row first, as after a spool replay or a sync; then an older one and a tie on ts
+        for (String rows : List.of("2024-05-01T10:01:45Z,,,,,,,26,,,,,,,,,,,\n",
+                "2024-05-01T10:01:00Z,,,,,,,30,,,,,,,,,,,\n2024-05-01T10:00:00Z,,,,,,,20,,,,,,,,,,,\n",
+                "2024-05-01T10:00:00Z,,,,,,,21,,,,,,,,,,,\n")) {
+            mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(csv(HEADER + rows)))
+                    .andExpect(status().isCreated());
+        }
+
+        for (String from : List.of("2024-05-01T10:00:00Z", "2024-05-01T09:59:59Z")) {
+            mockMvc.perform(get("/api/db/{db}/aggregate", "db3")
+                            .param("columns", "temp_c")
+                            .param("bucket", "1m")
+                            .param("from", from))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.source").value(from.endsWith("00Z") ? "rollup:1m" : "raw"))
+                    .andExpect(jsonPath("$.series[0].buckets[0].last").value(21.0))
+                    .andExpect(jsonPath("$.series[0].buckets[1].last").value(26.0));
+        }
+    }
+
+    @Test
+    void rebuildRecomputesRollupsFromRawRows() throws Exception {
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(csv(HEADER
+                        + "2024-05-01T10:00:00Z,,,,,,,20,,,,,,,,,,,\n"
+                        + "2024-05-01T11:30:00Z,,,,,,,24,,,,,,,,,,,\n")))
+                .andExpect(status().isCreated());
+        jdbcTemplates.get("db3").update("DELETE FROM telemetry_rollup");
+
+        mockMvc.perform(post("/api/db/{db}/rollups/rebuild", "db3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.telemetryRows").value(2));
+
+        mockMvc.perform(get("/api/db/{db}/aggregate", "db3")
+                        .param("columns", "temp_c")
+                        .param("bucket", "1d"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.source").value("rollup:1d"))
+                .andExpect(jsonPath("$.series[0].buckets[0].count").value(2))
+                .andExpect(jsonPath("$.series[0].buckets[0].avg").value(22.0))
+                .andExpect(jsonPath("$.series[0].buckets[0].last").value(24.0));
+    }
+
+    @Test
+    void uploadReportsChunksAndRejectedLines() throws Exception {
+        MockMultipartFile file = csv(HEADER
+                + "2024-05-01T10:00:00Z,1,,,,,,20,,,,,,,,,,,\n"
+                + "kein-datum,1,,,,,,20,,,,,,,,,,,\n"
+                + "\n"
+                + "2024-05-01 10:00:02,1,,,,,,22,,,,,,,,,,,\n"
+                + "2024-05-01T10:00:03,\"1\",,,,,,23,,,,,,,,,,,\n");
+
+        mockMvc.perform(multipart("/api/db/{db}/upload", "dbLocal").file(file))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.rowsImported").value(3))
+                .andExpect(jsonPath("$.chunkRows[0]").value(2))
+                .andExpect(jsonPath("$.chunkRows[1]").value(1))
+                .andExpect(jsonPath("$.rejectedLines").value(1))
+                .andExpect(jsonPath("$.rejectedLineSamples[0]").value(3));
+    }
+
+    @Test
+    void uploadAcceptsGzippedBinaryFrames() throws Exception {
+        TelemetryBatch batch = new TelemetryBatch(5);
+        int temp = TelemetryBatch.columnIndex("temp_c");
+        for (int i = 0; i < 5; i++) {
+            int row = batch.addRow(Instant.parse("2024-05-01T10:00:00Z").toEpochMilli() + i * 1000L);
+            if (i != 3) batch.set(row, temp, 20.5 + i);
+        }
+        // frames of at most chunk-rows rows; the first chunk takes two whole frames
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            for (ByteBuffer part : List.of(TelemetryFrameCodec.header(TelemetryBatch.COLUMNS),
+                    TelemetryFrameCodec.encode(batch, 0, 1), TelemetryFrameCodec.encode(batch, 1, 3),
+                    TelemetryFrameCodec.encode(batch, 3, 5))) {
+                gzip.write(part.array(), part.arrayOffset() + part.position(), part.remaining());
+            }
+        }
+
+        mockMvc.perform(post("/api/db/{db}/upload", "db3")
+                        .contentType(TelemetryFrameCodec.MEDIA_TYPE)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(body.toByteArray()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.rowsImported").value(5))
+                .andExpect(jsonPath("$.linesRead").value(5))
+                .andExpect(jsonPath("$.chunkRows[0]").value(3))
+                .andExpect(jsonPath("$.chunkRows[1]").value(2));
+
+        JdbcTemplate jt = jdbcTemplates.get("db3");
+        assertThat(jt.queryForList("SELECT temp_c FROM telemetry ORDER BY ts", Double.class))
+                .containsExactly(20.5, 21.5, 22.5, null, 24.5);
+
+        mockMvc.perform(post("/api/db/{db}/upload", "db3")
+                        .contentType(TelemetryFrameCodec.MEDIA_TYPE)
+                        .content(HEADER.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/db/{db}/upload", "db3")
+                        .contentType(TelemetryFrameCodec.MEDIA_TYPE)
+                        .header(HttpHeaders.CONTENT_ENCODING, "br")
+                        .content(body.toByteArray()))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    @Test
+    void uploadRejectsFramesWithMoreRowsThanAChunk() throws Exception {
+        // 1M all-NULL rows compress to a few KB but would decode to over 100 MB of columns
+        TelemetryBatch batch = new TelemetryBatch(1_000_000);
+        for (int i = 0; i < 1_000_000; i++) batch.addRow(1_714_557_600_000L + i);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            for (ByteBuffer part : List.of(TelemetryFrameCodec.header(TelemetryBatch.COLUMNS),
+                    TelemetryFrameCodec.encode(batch, 0, batch.size()))) {
+                gzip.write(part.array(), part.arrayOffset() + part.position(), part.remaining());
+            }
+        }
+
+        mockMvc.perform(post("/api/db/{db}/upload", "db3")
+                        .contentType(TelemetryFrameCodec.MEDIA_TYPE)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(body.toByteArray()))
+                .andExpect(status().isBadRequest());
+        assertThat(jdbcTemplates.get("db3").queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isZero();
+    }
+
+    @Test
+    void streamPushesCommittedRowsProjectedAndCoalesced() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/db/{db}/stream", "db3")
+                        .param("columns", "temp_c").param("maxRows", "2").param("interval", "250"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(csv(HEADER
+                        + "2024-05-01T10:00:00Z,1,,,,,,20,,,,,,,,,,,\n"
+                        + "2024-05-01T10:00:01Z,1,,,,,,21,,,,,,,,,,,\n"
+                        + "2024-05-01T10:00:02Z,1,,,,,,22,,,,,,,,,,,\n")))
+                .andExpect(status().isCreated());
+
+        // two commits (chunk-rows=2) into a ring of two rows: 3 rows in total, some possibly coalesced
+        List<Map<String, Object>> rows = new ArrayList<>();
+        long seen = 0;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (seen < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            rows.clear();
+            seen = 0;
+            String content = stream.getResponse().getContentAsString();
+            // only complete events; the emitter writes an event in several parts
+            for (String line : content.substring(0, content.lastIndexOf("\n\n") + 1).split("\n")) {
+                if (!line.startsWith("data:")) continue;
+                Map<String, Object> event = objectMapper.readValue(line.substring(5), new TypeReference<>() {});
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> eventRows = (List<Map<String, Object>>) event.get("rows");
+                rows.addAll(eventRows);
+                seen += eventRows.size() + ((Number) event.get("dropped")).longValue();
+            }
+        }
+        assertThat(seen).isEqualTo(3);
+        assertThat(rows).allSatisfy(r -> assertThat(r).containsOnlyKeys("ts", "temp_c"));
+        assertThat(rows.get(rows.size() - 1)).containsEntry("temp_c", 22.0);
+
+        mockMvc.perform(get("/api/db/{db}/stream", "db3").param("columns", "nope"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void asyncIngestQueuesUploadAndReportsProgress() throws Exception {
+        MvcResult accepted = mockMvc.perform(multipart("/api/db/{db}/ingest", "db3").file(csv(HEADER
+                        + "2024-05-01T10:00:00Z,1,2,3,4,5,6,21.5,1013.2,40,0,0,0,0,0,9.81,0,0,0\n"
+                        + "kein-datum,1,,,,,,20,,,,,,,,,,,\n"
+                        + "2024-05-01T10:00:01Z,1,2,3,4,5,6,21.7,1013.1,41,0,0,0,0,0,9.81,0,0,0\n"
+                        + "2024-05-01T10:00:02Z,1,2,3,4,5,6,21.9,1013.1,41,0,0,0,0,0,9.81,0,0,0\n")))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists(HttpHeaders.LOCATION))
+                .andReturn();
+        String jobId = objectMapper.readTree(accepted.getResponse().getContentAsByteArray()).get("id").asText();
+
+        Map<String, Object> job = Map.of();
+        for (int i = 0; i < 100; i++) {
+            job = objectMapper.readValue(mockMvc.perform(get("/api/db/{db}/ingest/{id}", "db3", jobId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsByteArray(), new TypeReference<Map<String, Object>>() {});
+            if ("DONE".equals(job.get("state")) || "FAILED".equals(job.get("state"))) break;
+            Thread.sleep(50);
+        }
+        assertThat(job).containsEntry("state", "DONE").containsEntry("rowsImported", 3).containsEntry("rejectedLines", 1);
+        assertThat(jdbcTemplates.get("db3").queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(3);
+
+        mockMvc.perform(multipart("/api/db/{db}/ingest", "db3").file(csv("timestamp,temp_c\n")))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/db/{db}/ingest/{id}", "db3", "unknown"))
+                .andExpect(status().isNotFound());
     }
 
     @Test
-    void downloadReturnsCsvWithData() throws Exception {
-        dbService.replaceItems("db2", List.of("ItemA", "ItemB"));
+    void uploadRejectsMissingColumns() throws Exception {
+        MockMultipartFile file = csv("timestamp,temp_c\n2024-05-01T10:00:00Z,20\n");
+
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(file))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void downloadStreamsUploadedRowsAsCsv() throws Exception {
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(csv(HEADER
+                        + "2024-05-01T10:00:00Z,1,2,3,4,5,6,21.5,1013.2,40,0,0,0,0,0,9.81,0,0,0\n"
+                        + "2024-05-02T10:00:00Z,1,,3,4,5,6,22.5,1013.2,40,0,0,0,0,0,9.81,0,0,0\n")))
+                .andExpect(status().isCreated());
 
-        MvcResult result = mockMvc.perform(get("/api/db/{db}/download", "db2"))
+        MvcResult started = mockMvc.perform(get("/api/db/{db}/download", "db3").param("from", "2024-05-02T00:00:00Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
                 .andExpect(status().isOk())
-                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("db2")))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("db3")))
                 .andReturn();
 
-        String content = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
-        assertThat(content).contains("ItemA");
-        assertThat(content).contains("ItemB");
+        String[] lines = result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
         assertThat(result.getResponse().getContentType()).startsWith("text/csv");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).isEqualTo(HEADER.trim());
+        assertThat(lines[1]).startsWith("2024-05-02T10:00:00Z,1.0,,3.0,");
+    }
+
+    @Test
+    void downloadCompressesWhenGzipIsAccepted() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/db/{db}/download", "db3")
+                        .param("table", "measurements")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).startsWith("id,sensor_id,ts,");
+        }
     }
 
     @Test
     void uploadRejectsEmptyFiles() throws Exception {
         MockMultipartFile file = new MockMultipartFile("file", "empty.csv", MediaType.TEXT_PLAIN_VALUE, new byte[0]);
 
-        mockMvc.perform(multipart("/api/db/{db}/upload", "db1").file(file))
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(file))
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void schemaListsColumnsAndRowEstimatesAndIsCachedUntilRefresh() throws Exception {
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(csv(HEADER
+                        + "2024-05-01T10:00:00Z,,,,,,,20,,,,,,,,,,,\n")))
+                .andExpect(status().isCreated());
+
+        List<Map<String, Object>> schema = readRows(mockMvc.perform(get("/api/db/{db}/schema", "db3")
+                        .param("refresh", "true"))
+                .andExpect(status().isOk())
+                .andReturn());
+        Map<String, Object> telemetry = schema.stream()
+                .filter(t -> "telemetry".equals(t.get("name"))).findFirst().orElseThrow();
+        assertThat(schema).noneMatch(t -> String.valueOf(t.get("name")).startsWith("sqlite_"));
+        assertThat(((Number) telemetry.get("rowEstimate")).longValue()).isPositive();
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> columns = (List<Map<String, Object>>) telemetry.get("columns");
+        assertThat(columns).anySatisfy(c -> {
+            assertThat(c.get("name")).isEqualTo("id");
+            assertThat(c.get("pk")).isEqualTo(1);
+        });
+        assertThat(columns).anySatisfy(c -> {
+            assertThat(c.get("name")).isEqualTo("temp_c");
+            assertThat(c.get("type")).isEqualTo("REAL");
+            assertThat(c.get("pk")).isEqualTo(0);
+        });
+        long estimate = ((Number) telemetry.get("rowEstimate")).longValue();
+
+        jdbcTemplates.get("db3").update("INSERT INTO telemetry (ts) VALUES (0)");
+        mockMvc.perform(get("/api/db/{db}/schema", "db3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'telemetry')].rowEstimate").value((int) estimate));
+        mockMvc.perform(get("/api/db/{db}/schema", "db3").param("refresh", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'telemetry')].rowEstimate").value((int) estimate + 1));
+    }
+
+    @Test
+    void prometheusEndpointReportsIngestQueryAndPoolMetrics() throws Exception {
+        mockMvc.perform(multipart("/api/db/{db}/upload", "db3").file(csv(HEADER
+                        + "2024-05-01T10:00:00Z,,,,,,,20,,,,,,,,,,,\n"
+                        + "2024-05-01T10:00:01Z,,,,,,,21,,,,,,,,,,,\n"
+                        + "2024-05-01T10:00:02Z,,,,,,,22,,,,,,,,,,,\n")))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/api/db/{db}/data", "db3")).andExpect(status().isOk());
+
+        String metrics = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(metrics)
+                .contains("bridge_ingest_rows_total{db=\"db3\",phase=\"parse\"}")
+                .contains("bridge_ingest_rows_total{db=\"db3\",phase=\"insert\"}")
+                .contains("bridge_ingest_bytes_total{db=\"db3\",phase=\"parse\"}")
+                .contains("bridge_ingest_time_seconds_sum{db=\"db3\",phase=\"insert\"}")
+                .contains("bridge_db_batch_rows_count{db=\"db3\",table=\"telemetry\"}")
+                .contains("bridge_db_query_seconds_bucket{db=\"db3\",op=\"data\"")
+                .contains("hikaricp_connections_active{pool=\"db-db3\"}")
+                .contains("hikaricp_connections_pending{pool=\"db-db3-ro\"}");
+    }
+
     @Test
     void unknownDatabaseReturns404() throws Exception {
         mockMvc.perform(get("/api/db/{db}/data", "unknown"))
                 .andExpect(status().isNotFound());
     }
 
+    private MockMultipartFile csv(String content) {
+        return new MockMultipartFile("file", "telemetry.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+
     private List<Map<String, Object>> readRows(MvcResult result) throws Exception {
         return objectMapper.readValue(
                 result.getResponse().getContentAsByteArray(),
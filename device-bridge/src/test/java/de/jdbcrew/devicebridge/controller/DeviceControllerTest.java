@@ -1,12 +1,16 @@
 package de.jdbcrew.devicebridge.controller;
 
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -37,6 +41,27 @@ class DeviceControllerTest {
                 .andExpect(jsonPath("$.reachable").value(true));
     }
 
+    @Test
+    void fleetStatusCoversAllTargetsAndIsCached() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/devices/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[*].target", hasItem("pi")))
+                .andExpect(jsonPath("$[*].target", hasItem("server")))
+                .andExpect(jsonPath("$[*].target", hasItem("aws")))
+                .andExpect(jsonPath("$[?(@.target == 'pi')].data.cpuTemp", hasItem(47.8)))
+                .andExpect(jsonPath("$[?(@.reachable == false)]").isEmpty())
+                .andReturn();
+
+        // within devices.status.ttl the second request is answered from the cache
+        String checkedAt = "$[?(@.target == 'aws')].checkedAt";
+        MvcResult second = mockMvc.perform(get("/api/devices/status"))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(JsonPath.<Object>read(second.getResponse().getContentAsString(), checkedAt))
+                .isEqualTo(JsonPath.read(first.getResponse().getContentAsString(), checkedAt));
+    }
+
     @Test
     void runsCommandsForDifferentTargets() throws Exception {
         String payload = "{\"command\":\"echo hi\"}";
@@ -0,0 +1,103 @@
+package de.jdbcrew.devicebridge.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.jdbcrew.devicebridge.service.DbService;
+import de.jdbcrew.devicebridge.service.IdCache;
+import de.jdbcrew.devicebridge.service.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class FederatedControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DbService dbService;
+
+    @Autowired
+    private Map<String, JdbcTemplate> jdbcTemplates;
+
+    @Autowired
+    private IdCache idCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void cleanDatabase() {
+        TestData.cleanDatabases(jdbcTemplates, idCache, "db3", "dblocal");
+    }
+
+    @Test
+    void dataStreamsOneLinePerTargetAndReportsUnreachableOnes() throws Exception {
+        dbService.importTelemetry("db3", TestData.telemetry(5, 1_700_000_040_000L));
+        dbService.importTelemetry("dblocal", TestData.telemetry(2, 1_700_000_040_000L));
+
+        long started = System.currentTimeMillis();
+        MvcResult async = mockMvc.perform(get("/api/federated/data")
+                        .param("dbs", "db3,dbLocal,db1")
+                        .param("limit", "3")
+                        .param("timeoutMs", "1500"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(async)).andExpect(status().isOk()).andReturn();
+
+        Map<String, JsonNode> byDb = new HashMap<>();
+        for (String line : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode node = objectMapper.readTree(line);
+            byDb.put(node.get("db").asText(), node);
+        }
+        assertThat(byDb).containsOnlyKeys("db3", "dblocal", "db1");
+        assertThat(byDb.get("db3").get("result")).hasSize(3);
+        assertThat(byDb.get("dblocal").get("result")).hasSize(2);
+        assertThat(byDb.get("db1").get("error").asText()).isNotEmpty();
+        // bounded by the timeout, not by db1's connect timeout
+        assertThat(System.currentTimeMillis() - started).isLessThan(8000);
+    }
+
+    @Test
+    void aggregateRunsOnEveryRequestedTarget() throws Exception {
+        dbService.importTelemetry("db3", TestData.telemetry(120, 1_700_000_040_000L));
+
+        MvcResult async = mockMvc.perform(get("/api/federated/aggregate")
+                        .param("dbs", "db3,dblocal")
+                        .param("columns", "temp_c")
+                        .param("bucket", "1m"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(async)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<JsonNode> lines = body.lines().map(l -> {
+            try {
+                return objectMapper.readTree(l);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).toList();
+        assertThat(lines).extracting(n -> n.get("db").asText()).containsExactlyInAnyOrder("db3", "dblocal");
+        JsonNode db3 = lines.stream().filter(n -> n.get("db").asText().equals("db3")).findFirst().orElseThrow();
+        assertThat(db3.at("/result/series/0/buckets")).hasSize(2);
+    }
+}
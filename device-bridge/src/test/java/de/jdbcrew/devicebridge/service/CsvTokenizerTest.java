@@ -0,0 +1,120 @@
+package de.jdbcrew.devicebridge.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvTokenizerTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    @Test
+    void splitsLikeTheFormerSplitCsv() throws IOException {
+        CsvTokenizer t = tokenizer(" a , \"b,c\" ,\"say \"\"hi\"\"\",x\"y\"z,,\" padded \"\n");
+
+        assertThat(t.nextLine()).isTrue();
+        assertThat(fields(t)).containsExactly("a", "b,c", "say \"hi\"", "xyz", "", "padded");
+    }
+
+    @Test
+    void handlesAllLineTerminatorsAndBlankLines() throws IOException {
+        CsvTokenizer t = new CsvTokenizer(new StringReader("a\r\nb\rc\n  \nd"), 16, BERLIN);
+
+        List<String> lines = new ArrayList<>();
+        while (t.nextLine()) lines.add(t.isBlankLine() ? "<blank>" : t.stringAt(0));
+        assertThat(lines).containsExactly("a", "b", "c", "<blank>", "d");
+    }
+
+    @Test
+    void growsBuffersForLongLines() throws IOException {
+        String longField = "x".repeat(1000);
+        CsvTokenizer t = new CsvTokenizer(new StringReader(longField + ",1.5\nnext"), 16, BERLIN);
+
+        assertThat(t.nextLine()).isTrue();
+        assertThat(t.stringAt(0)).isEqualTo(longField);
+        assertThat(t.doubleAt(1)).isEqualTo(1.5);
+        assertThat(t.nextLine()).isTrue();
+        assertThat(t.stringAt(0)).isEqualTo("next");
+        assertThat(t.nextLine()).isFalse();
+    }
+
+    @Test
+    void parsesDoublesExactlyLikeDoubleParseDouble() throws IOException {
+        Random rnd = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        List<String> literals = new ArrayList<>(List.of(
+                "0", "-0.0", "+1", "1.", ".5", "21.53", "1013.25", "-9.81", "1e3", "1.5E-7", "3.0d",
+                "0.30000000000000004", "123456789012345678901234", "4.9e-324", "1.7976931348623157E308"));
+        for (int i = 0; i < 2000; i++) {
+            literals.add(Double.toString((rnd.nextDouble() - 0.5) * Math.pow(10, rnd.nextInt(12) - 4)));
+            literals.add(String.format(java.util.Locale.ROOT, "%.3f", rnd.nextDouble() * 1000));
+        }
+        for (String literal : literals) sb.append(literal).append('\n');
+
+        CsvTokenizer t = tokenizer(sb.toString());
+        for (String literal : literals) {
+            assertThat(t.nextLine()).isTrue();
+            assertThat(t.doubleAt(0)).as(literal).isEqualTo(Double.parseDouble(literal));
+        }
+    }
+
+    @Test
+    void malformedOrMissingNumbersAreNaN() throws IOException {
+        CsvTokenizer t = tokenizer(",abc,1.2.3,-,1e,e5,.,12x\n");
+
+        assertThat(t.nextLine()).isTrue();
+        for (int f = 0; f <= t.fieldCount(); f++) {
+            assertThat(t.doubleAt(f)).as("field " + f).isNaN();
+        }
+    }
+
+    @Test
+    void parsesSupportedTimestampFormats() throws IOException {
+        CsvTokenizer t = tokenizer("2024-05-01T10:00:00Z,2024-05-01T10:00:00.123456Z,2024-05-01T12:00:00+02:00,"
+                + "2024-05-01T10:00,2024-05-01 10:00:00.250,2024-05-01 10:00:00,2024-03-31T02:30:00\n");
+
+        assertThat(t.nextLine()).isTrue();
+        assertThat(t.epochMillisAt(0)).isEqualTo(Instant.parse("2024-05-01T10:00:00Z").toEpochMilli());
+        assertThat(t.epochMillisAt(1)).isEqualTo(Instant.parse("2024-05-01T10:00:00.123Z").toEpochMilli());
+        assertThat(t.epochMillisAt(2)).isEqualTo(Instant.parse("2024-05-01T10:00:00Z").toEpochMilli());
+        assertThat(t.epochMillisAt(3)).isEqualTo(local("2024-05-01T10:00:00"));
+        assertThat(t.epochMillisAt(4)).isEqualTo(local("2024-05-01T10:00:00.250"));
+        assertThat(t.epochMillisAt(5)).isEqualTo(local("2024-05-01T10:00:00"));
+        // inside the DST gap: same instant java.sql.Timestamp.valueOf produced
+        assertThat(t.epochMillisAt(6)).isEqualTo(Instant.parse("2024-03-31T01:30:00Z").toEpochMilli());
+    }
+
+    @Test
+    void rejectsInvalidTimestamps() throws IOException {
+        CsvTokenizer t = tokenizer("kein-datum,2024-02-30T10:00:00Z,2024-05-01 10:00,2024-05-01 10:00:00.5,"
+                + "2024-05-01T25:00:00Z,2024-05-01T10:00:00+0200,,2024-05-01 10:00:00Z\n");
+
+        assertThat(t.nextLine()).isTrue();
+        for (int f = 0; f < t.fieldCount(); f++) {
+            assertThat(t.epochMillisAt(f)).as("field " + f).isEqualTo(CsvTokenizer.NO_TIMESTAMP);
+        }
+    }
+
+    private static CsvTokenizer tokenizer(String content) {
+        return new CsvTokenizer(new StringReader(content), 64, BERLIN);
+    }
+
+    private static List<String> fields(CsvTokenizer t) {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < t.fieldCount(); i++) out.add(t.stringAt(i));
+        return out;
+    }
+
+    private static long local(String isoLocal) {
+        return LocalDateTime.parse(isoLocal).atZone(BERLIN).toInstant().toEpochMilli();
+    }
+}
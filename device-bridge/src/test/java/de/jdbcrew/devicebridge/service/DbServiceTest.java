@@ -0,0 +1,148 @@
+package de.jdbcrew.devicebridge.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class DbServiceTest {
+
+    @Autowired
+    private DbService dbService;
+
+    @Autowired
+    private Map<String, JdbcTemplate> jdbcTemplates;
+
+    @Autowired
+    private IdCache idCache;
+
+    private JdbcTemplate jt;
+
+    @BeforeEach
+    void cleanDatabase() {
+        jt = jdbcTemplates.get("db3");
+        jt.update("DELETE FROM measurements");
+        jt.update("DELETE FROM measurement_rollup");
+        jt.update("DELETE FROM telemetry_rollup");
+        jt.update("DELETE FROM sensors WHERE device_id IN (SELECT id FROM devices WHERE name LIKE 'test-%')");
+        jt.update("DELETE FROM devices WHERE name LIKE 'test-%'");
+        idCache.invalidateAll("db3");
+    }
+
+    @Test
+    void concurrentTelemetryImportsAreSerializedOnSqlite() throws Exception {
+        jt.update("DELETE FROM telemetry");
+        assertThat(jt.queryForObject("PRAGMA journal_mode", String.class)).isEqualToIgnoringCase("wal");
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    TelemetryBatch batch = new TelemetryBatch(500);
+                    for (int i = 0; i < 500; i++) {
+                        batch.set(batch.addRow(1_700_000_000_000L + thread * 1000L + i), 6, 20.0);
+                    }
+                    return dbService.importTelemetry("db3", batch);
+                }));
+            }
+            for (Future<Integer> r : results) assertThat(r.get()).isEqualTo(500);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(4000);
+    }
+
+    @Test
+    void registrationFindsExistingSensorsByUniqueKey() {
+        jt.update("INSERT INTO devices (name) VALUES ('test-c')");
+        long device = jt.queryForObject("SELECT id FROM devices WHERE name = 'test-c'", Long.class);
+        jt.update("INSERT INTO sensors (device_id, kind, label) VALUES (?, 'env', '')", device);
+        long sensor = jt.queryForObject("SELECT id FROM sensors WHERE device_id = ?", Long.class, device);
+
+        Map<Long, Long> ids = dbService.registerSensors("db3", List.of("test-c", "test-d"), Map.of(
+                1L, new DbService.SensorRef("test-c", "env", null),
+                2L, new DbService.SensorRef("test-c", "env", ""),
+                3L, new DbService.SensorRef("test-d", "env", "x")));
+
+        assertThat(ids.get(1L)).isEqualTo(sensor);
+        assertThat(ids.get(2L)).isEqualTo(sensor);
+        assertThat(ids.get(3L)).isNotEqualTo(sensor);
+        assertThat(jt.queryForObject(
+                "SELECT COUNT(*) FROM sensors s JOIN devices d ON d.id = s.device_id WHERE d.name IN ('test-c', 'test-d')",
+                Integer.class)).isEqualTo(2);
+        assertThatThrownBy(() -> jt.update("INSERT INTO sensors (device_id, kind, label) VALUES (?, 'env', '')", device))
+                .hasMessageContaining("UNIQUE constraint failed");
+    }
+
+    @Test
+    void multiRowInsertsBindEveryRowIncludingTheRemainder() {
+        jt.update("DELETE FROM telemetry");
+        assertThat(dbService.dialect("db3").rowsPerInsert(1 + TelemetryBatch.COLUMN_COUNT)).isGreaterThan(1);
+
+        // two full multi-row statements and a shorter last one
+        int rows = 2 * dbService.dialect("db3").rowsPerInsert(1 + TelemetryBatch.COLUMN_COUNT) + 3;
+        TelemetryBatch batch = new TelemetryBatch(rows);
+        for (int i = 0; i < rows; i++) {
+            int row = batch.addRow(1_700_000_000_000L + i);
+            batch.set(row, 6, i);
+            if (i % 2 == 0) batch.set(row, TelemetryBatch.COLUMN_COUNT - 1, -i);
+        }
+        assertThat(dbService.importTelemetry("db3", batch)).isEqualTo(rows);
+
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(rows);
+        assertThat(jt.queryForObject("SELECT SUM(temp_c) FROM telemetry", Long.class)).isEqualTo((long) rows * (rows - 1) / 2);
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry WHERE gyro_z IS NULL", Integer.class)).isEqualTo(rows / 2);
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry WHERE temp_c = ts - 1700000000000", Integer.class))
+                .isEqualTo(rows);
+    }
+
+    @Test
+    void importMeasurementsRegistersDevicesAndSensorsOnce() {
+        List<DbService.SensorMeasurement> rows = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            String device = i % 2 == 0 ? "test-a" : "test-b";
+            String label = i % 3 == 0 ? null : "env-" + (i % 3);
+            rows.add(new DbService.SensorMeasurement(device, "env", label, new Timestamp(1_700_000_000_000L + i),
+                    "inside", "temp", 20.0 + i % 5, null, "C", null, null));
+        }
+
+        assertThat(dbService.importMeasurements("db3", rows)).isEqualTo(2500);
+        IdCache.Stats before = idCache.stats("db3");
+        assertThat(dbService.importMeasurements("db3", rows.subList(0, 10))).isEqualTo(10);
+        IdCache.Stats after = idCache.stats("db3");
+
+        // second import: 2 devices + 6 sensors, all served from the cache
+        assertThat(after.hits() - before.hits()).isEqualTo(8);
+        assertThat(after.misses()).isEqualTo(before.misses());
+
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM devices WHERE name LIKE 'test-%'", Integer.class)).isEqualTo(2);
+        assertThat(jt.queryForObject(
+                "SELECT COUNT(*) FROM sensors s JOIN devices d ON d.id = s.device_id WHERE d.name LIKE 'test-%'",
+                Integer.class)).isEqualTo(6);
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM measurements", Integer.class)).isEqualTo(2510);
+        assertThat(jt.queryForObject(
+                "SELECT COUNT(*) FROM sensors s JOIN devices d ON d.id = s.device_id WHERE d.name LIKE 'test-%' AND s.label = ''",
+                Integer.class)).isEqualTo(2);
+
+        // rollups follow the committed rows: 2510 temp values, every 5th one is 20.0
+        assertThat(jt.queryForObject(
+                "SELECT SUM(cnt) FROM measurement_rollup WHERE res = 86400000 AND metric = 'temp'", Long.class)).isEqualTo(2510);
+        assertThat(jt.queryForObject(
+                "SELECT MIN(min_val) FROM measurement_rollup WHERE res = 60000 AND metric = 'temp'", Double.class)).isEqualTo(20.0);
+    }
+}
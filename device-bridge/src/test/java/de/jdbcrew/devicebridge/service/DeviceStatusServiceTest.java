@@ -0,0 +1,108 @@
+package de.jdbcrew.devicebridge.service;
+
+import de.jdbcrew.devicebridge.dto.DeviceStatus;
+import de.jdbcrew.devicebridge.dto.StatusResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeviceStatusServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private DeviceStatusService service;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (service != null) service.shutdown();
+    }
+
+    @Test
+    void hungDeviceTimesOutWithoutHoldingBackTheOthers() {
+        AtomicInteger fastPolls = new AtomicInteger();
+        service = new DeviceStatusService(List.of(device("fast", fastPolls, 0), device("hung", new AtomicInteger(), 1)),
+                new BridgeMetrics(new SimpleMeterRegistry()), Duration.ofSeconds(5), Duration.ofSeconds(60),
+                Duration.ZERO, Duration.ofMillis(200));
+
+        long started = System.nanoTime();
+        List<DeviceStatus> status = service.statusAll();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(millis).isLessThan(3000);
+        assertThat(status).extracting(DeviceStatus::target).containsExactly("fast", "hung");
+        assertThat(status.get(0).reachable()).isTrue();
+        assertThat(status.get(1).reachable()).isFalse();
+        assertThat(status.get(1).message()).startsWith("Status timed out");
+
+        // the fresh entry is cached; only the hung target is asked again (and its poll is still running)
+        service.statusAll();
+        assertThat(fastPolls).hasValue(1);
+    }
+
+    @Test
+    void staleEntryIsServedWhileABackgroundPollRefreshesIt() throws Exception {
+        AtomicInteger polls = new AtomicInteger();
+        service = new DeviceStatusService(List.of(device("pi", polls, 2)),
+                new BridgeMetrics(new SimpleMeterRegistry()), Duration.ofMillis(1), Duration.ofHours(1),
+                Duration.ZERO, Duration.ofSeconds(1));
+
+        assertThat(service.statusAll().get(0).data()).containsEntry("poll", 1);
+        Thread.sleep(5);
+
+        // the refresh hangs until released, the request does not
+        DeviceStatus stale = service.statusAll().get(0);
+        assertThat(stale.stale()).isTrue();
+        assertThat(stale.data()).containsEntry("poll", 1);
+
+        // a second request joins the running refresh instead of starting another
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (polls.get() < 2 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertThat(service.statusAll().get(0).data()).containsEntry("poll", 1);
+        assertThat(polls).hasValue(2);
+
+        release.countDown();
+        Object poll = 1;
+        while (poll.equals(1) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            poll = service.statusAll().get(0).data().get("poll");
+        }
+        assertThat(poll).isNotEqualTo(1);
+    }
+
+    /** Polls from number {@code blockFrom} on wait for {@link #release}; 0 never blocks. */
+    private DeviceService device(String target, AtomicInteger polls, int blockFrom) {
+        return new DeviceService() {
+            @Override
+            public String getTarget() {
+                return target;
+            }
+
+            @Override
+            public StatusResponse getStatus() {
+                int n = polls.incrementAndGet();
+                if (blockFrom > 0 && n >= blockFrom) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return StatusResponse.ok(target, Map.of("poll", n));
+            }
+
+            @Override
+            public StatusResponse runCommand(String command) {
+                return StatusResponse.ok(target, Map.of());
+            }
+        };
+    }
+}
@@ -0,0 +1,197 @@
+package de.jdbcrew.devicebridge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class IngestSpoolTest {
+
+    private static final Path SPOOL = Path.of("target/test-spool/db3.spool");
+
+    @Autowired
+    private IngestSpool ingestSpool;
+
+    @Autowired
+    private Map<String, JdbcTemplate> jdbcTemplates;
+
+    @Autowired
+    private IdCache idCache;
+
+    private JdbcTemplate jt;
+
+    @BeforeEach
+    @AfterEach
+    void clean() throws Exception {
+        jt = jdbcTemplates.get("db3");
+        TestData.cleanDatabases(jdbcTemplates, idCache, "db3");
+        jt.execute("DROP TRIGGER IF EXISTS test_reject_telemetry");
+        ingestSpool.discard("db3");
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(SPOOL.getParent(), "db3-*.quarantine*")) {
+            for (Path f : files) Files.delete(f);
+        }
+    }
+
+    @Test
+    void frameRoundTripKeepsNullsAndDetectsCorruption() throws Exception {
+        TelemetryBatch batch = TestData.telemetry(70, 1_700_000_000_000L, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(TelemetryFrameCodec.header(TelemetryBatch.COLUMNS).array());
+        out.write(TelemetryFrameCodec.encode(batch, 0, batch.size()).array());
+        byte[] bytes = out.toByteArray();
+
+        var in = Channels.newChannel(new ByteArrayInputStream(bytes));
+        int[] columns = TelemetryFrameCodec.readHeader(in);
+        TelemetryBatch decoded = new TelemetryBatch(70);
+        TelemetryFrameCodec.decode(TelemetryFrameCodec.readFrame(in, new ByteBuffer[1]), columns, decoded);
+        assertThat(TelemetryFrameCodec.readFrame(in, new ByteBuffer[1])).isNull();
+
+        assertThat(decoded.size()).isEqualTo(70);
+        for (int r = 0; r < 70; r++) {
+            assertThat(decoded.epochMillis(r)).isEqualTo(batch.epochMillis(r));
+            for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+                assertThat(decoded.isNull(r, c)).isEqualTo(batch.isNull(r, c));
+                if (!batch.isNull(r, c)) assertThat(decoded.value(r, c)).isEqualTo(batch.value(r, c));
+            }
+        }
+
+        bytes[bytes.length - 3] ^= 0x55;
+        var damaged = Channels.newChannel(new ByteArrayInputStream(bytes));
+        TelemetryFrameCodec.readHeader(damaged);
+        assertThatThrownBy(() -> TelemetryFrameCodec.readFrame(damaged, new ByteBuffer[1]))
+                .isInstanceOf(TelemetryFrameCodec.CorruptFrameException.class);
+    }
+
+    @Test
+    void frameWithInfiniteValueIsRejected() throws Exception {
+        TelemetryBatch batch = TestData.telemetry(3, 1_700_000_000_000L);
+        batch.set(1, TelemetryBatch.columnIndex("temp_c"), Double.POSITIVE_INFINITY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(TelemetryFrameCodec.header(TelemetryBatch.COLUMNS).array());
+        out.write(TelemetryFrameCodec.encode(batch, 0, batch.size()).array());
+        var in = Channels.newChannel(new ByteArrayInputStream(out.toByteArray()));
+        int[] columns = TelemetryFrameCodec.readHeader(in);
+
+        assertThatThrownBy(() -> TelemetryFrameCodec.decode(TelemetryFrameCodec.readFrame(in, new ByteBuffer[1]), columns,
+                new TelemetryBatch(3)))
+                .isInstanceOf(TelemetryFrameCodec.CorruptFrameException.class)
+                .hasMessageContaining("Zeile 2");
+    }
+
+    @Test
+    void spooledRowsAreReplayedAndTheCircuitCloses() throws Exception {
+        IngestSpool.Target target = ingestSpool.target("db3");
+        target.open("test");
+        assertThat(ingestSpool.importOrSpool("db3", TestData.telemetry(300, 1_700_000_000_000L, 3)))
+                .isEqualTo(new IngestSpool.Outcome(0, 300));
+        assertThat(ingestSpool.importOrSpool("db3", TestData.telemetry(200, 1_700_001_000_000L, 3)))
+                .isEqualTo(new IngestSpool.Outcome(0, 200));
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isZero();
+        assertThat(ingestSpool.status("db3").circuit()).isEqualTo("OPEN");
+        assertThat(ingestSpool.status("db3").pendingBytes()).isPositive();
+
+        ingestSpool.replayPending();
+
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(500);
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry WHERE temp_c IS NULL", Integer.class)).isEqualTo(100 + 67);
+        IngestSpool.Status status = ingestSpool.status("db3");
+        assertThat(status.circuit()).isEqualTo("CLOSED");
+        assertThat(status.pendingBytes()).isZero();
+        assertThat(Files.exists(SPOOL)).isFalse();
+
+        // closed circuit: imported directly again
+        assertThat(ingestSpool.importOrSpool("db3", TestData.telemetry(10, 1_700_002_000_000L)))
+                .isEqualTo(new IngestSpool.Outcome(10, 0));
+    }
+
+    @Test
+    void spoolDrainsAndClosesWhileUploadsKeepArriving() throws Exception {
+        IngestSpool.Target target = ingestSpool.target("db3");
+        target.open("test");
+        for (int i = 0; i < 20; i++) ingestSpool.importOrSpool("db3", TestData.telemetry(1000, 1_700_000_000_000L + i * 1_000_000L));
+
+        AtomicBoolean replaying = new AtomicBoolean(true);
+        AtomicInteger sent = new AtomicInteger();
+        Thread uploader = new Thread(() -> {
+            long ts = 1_800_000_000_000L;
+            while (replaying.get()) {
+                ingestSpool.importOrSpool("db3", TestData.telemetry(10, ts));
+                ts += 10_000;
+                sent.addAndGet(10);
+            }
+        });
+        uploader.start();
+        try {
+            ingestSpool.replayPending();
+        } finally {
+            replaying.set(false);
+            uploader.join();
+        }
+
+        // every row arrived, either through the spool or directly once the circuit had closed
+        assertThat(ingestSpool.status("db3").circuit()).isEqualTo("CLOSED");
+        assertThat(Files.exists(SPOOL)).isFalse();
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(20_000 + sent.get());
+    }
+
+    @Test
+    void spoolThatCannotBeReplayedIsQuarantinedAndTheCircuitCloses() throws Exception {
+        IngestSpool.Target target = ingestSpool.target("db3");
+        target.open("test");
+        TelemetryBatch rejected = TestData.telemetry(20, 1_700_000_000_000L);
+        rejected.set(5, TelemetryBatch.columnIndex("temp_c"), -999);
+        ingestSpool.importOrSpool("db3", rejected);
+        jt.execute("CREATE TRIGGER test_reject_telemetry BEFORE INSERT ON telemetry WHEN NEW.temp_c = -999"
+                + " BEGIN SELECT RAISE(ABORT, 'rejected by test'); END");
+
+        ingestSpool.replayPending();
+
+        IngestSpool.Status status = ingestSpool.status("db3");
+        assertThat(status.circuit()).isEqualTo("CLOSED");
+        assertThat(status.pendingBytes()).isZero();
+        assertThat(status.quarantine()).hasSize(1);
+        assertThat(status.lastError()).startsWith("Quarantäne " + status.quarantine().get(0));
+        assertThat(Files.exists(SPOOL)).isFalse();
+        assertThat(Files.size(SPOOL.resolveSibling(status.quarantine().get(0)))).isPositive();
+        assertThat(jt.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isZero();
+
+        // later uploads are no longer spooled behind the rejected rows
+        assertThat(ingestSpool.importOrSpool("db3", TestData.telemetry(10, 1_700_002_000_000L)))
+                .isEqualTo(new IngestSpool.Outcome(10, 0));
+    }
+
+    @Test
+    void tornTailIsCutOffOnRecovery() throws Exception {
+        IngestSpool.Target target = ingestSpool.target("db3");
+        target.open("test");
+        ingestSpool.importOrSpool("db3", TestData.telemetry(50, 1_700_000_000_000L));
+        long intact = Files.size(SPOOL);
+        ingestSpool.importOrSpool("db3", TestData.telemetry(50, 1_700_001_000_000L));
+        try (FileChannel ch = FileChannel.open(SPOOL, StandardOpenOption.WRITE)) {
+            ch.truncate(Files.size(SPOOL) - 17); // crash in the middle of the second frame
+        }
+
+        IngestSpool.Target recovered = ingestSpool.new Target("db3");
+        assertThat(recovered.size).isEqualTo(intact);
+        assertThat(Files.size(SPOOL)).isEqualTo(intact);
+    }
+}
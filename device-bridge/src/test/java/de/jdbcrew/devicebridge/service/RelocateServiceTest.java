@@ -0,0 +1,118 @@
+package de.jdbcrew.devicebridge.service;
+
+import de.jdbcrew.devicebridge.dto.RelocateStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class RelocateServiceTest {
+
+    @Autowired
+    private RelocateService relocateService;
+
+    @Autowired
+    private DbService dbService;
+
+    @Autowired
+    private Map<String, JdbcTemplate> jdbcTemplates;
+
+    @Autowired
+    private IdCache idCache;
+
+    @Autowired
+    private IngestSpool ingestSpool;
+
+    private JdbcTemplate source;
+    private JdbcTemplate target;
+
+    @BeforeEach
+    void cleanDatabases() {
+        source = jdbcTemplates.get("db3");
+        target = jdbcTemplates.get("dblocal");
+        TestData.cleanDatabases(jdbcTemplates, idCache, "db3", "dblocal");
+    }
+
+    @Test
+    void copiesAllRowsVerifiesThemAndRestoresIndexes() throws Exception {
+        TelemetryBatch batch = TestData.telemetry(3456, 1_700_000_000_000L, 4);
+        dbService.importTelemetry("db3", batch);
+        List<DbService.SensorMeasurement> rows = new ArrayList<>();
+        for (int i = 0; i < 777; i++) {
+            rows.add(new DbService.SensorMeasurement(i % 2 == 0 ? "test-a" : "test-b", "env", null,
+                    new Timestamp(1_700_000_000_000L + i), "inside", "temp", i % 5 == 0 ? null : 20.0 + i, null,
+                    "C", i % 7 == 0 ? "note, \"quoted\"" : null, null));
+        }
+        dbService.importMeasurements("db3", rows);
+
+        RelocateStatus status = relocateService.start("db3", "dbLocal");
+        for (int i = 0; i < 300 && "RUNNING".equals(status.state()); i++) {
+            Thread.sleep(100);
+            status = relocateService.status(status.id());
+        }
+
+        assertThat(status.error()).isNull();
+        assertThat(status.state()).isEqualTo("DONE");
+        assertThat(status.rowsCopied()).isEqualTo(3456 + 777);
+        assertThat(status.checks()).hasSize(2).allMatch(RelocateStatus.TableCheck::match);
+        assertThat(target.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(3456);
+        assertThat(target.queryForObject("SELECT COUNT(*) FROM measurements", Integer.class)).isEqualTo(777);
+        assertThat(target.queryForObject("SELECT MAX(id) FROM telemetry", Long.class))
+                .isEqualTo(source.queryForObject("SELECT MAX(id) FROM telemetry", Long.class));
+        assertThat(target.queryForObject(
+                "SELECT COUNT(*) FROM measurements m JOIN sensors s ON s.id = m.sensor_id JOIN devices d ON d.id = s.device_id"
+                        + " WHERE d.name = 'test-b'", Integer.class)).isEqualTo(388);
+        assertThat(target.queryForList("SELECT name FROM sqlite_master WHERE type = 'index' AND name LIKE 'idx_%'", String.class))
+                .contains("idx_telemetry_ts", "idx_meas_sensor_ts", "idx_meas_metric_ts");
+        assertThat(target.queryForObject(
+                "SELECT SUM(cnt) FROM telemetry_rollup WHERE res = 86400000 AND col = 'temp_c'", Long.class)).isEqualTo(2592);
+        // the finished relocation lets imports in again
+        assertThat(dbService.importTelemetry("dblocal", batch)).isEqualTo(3456);
+    }
+
+    @Test
+    void refusesADestinationThatHoldsData() {
+        TelemetryBatch batch = TestData.telemetry(1, 1_700_000_000_000L);
+        dbService.importTelemetry("dblocal", batch);
+
+        assertThatThrownBy(() -> relocateService.start("db3", "dbLocal"))
+                .isInstanceOf(RelocateService.RelocateConflictException.class);
+        assertThatThrownBy(() -> relocateService.start("db3", "db3")).isInstanceOf(IllegalArgumentException.class);
+        // the refused relocation does not keep blocking imports
+        assertThat(dbService.importTelemetry("dblocal", batch)).isEqualTo(1);
+    }
+
+    @Test
+    void importsIntoTheDestinationWaitForTheRelocation() throws Exception {
+        TelemetryBatch batch = TestData.telemetry(10, 1_700_000_000_000L);
+
+        dbService.beginRelocation("dbLocal");
+        try {
+            assertThatThrownBy(() -> ingestSpool.importOrSpool("dblocal", batch))
+                    .isInstanceOf(DbService.RelocationInProgressException.class);
+            assertThat(ingestSpool.status("dblocal").circuit()).isEqualTo("CLOSED");
+
+            // rows spooled during an outage stay in the spool until the relocation is over
+            ingestSpool.target("dblocal").open("test");
+            ingestSpool.importOrSpool("dblocal", batch);
+            ingestSpool.replayPending();
+            assertThat(ingestSpool.status("dblocal").circuit()).isEqualTo("OPEN");
+            assertThat(ingestSpool.status("dblocal").quarantine()).isEmpty();
+        } finally {
+            dbService.endRelocation("dbLocal");
+        }
+        ingestSpool.replayPending();
+        assertThat(ingestSpool.status("dblocal").circuit()).isEqualTo("CLOSED");
+        assertThat(target.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(10);
+    }
+}
@@ -0,0 +1,101 @@
+package de.jdbcrew.devicebridge.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class SyncServiceTest {
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private DbService dbService;
+
+    @Autowired
+    private Map<String, JdbcTemplate> jdbcTemplates;
+
+    @Autowired
+    private IdCache idCache;
+
+    private JdbcTemplate source;
+    private JdbcTemplate target;
+
+    @BeforeEach
+    void cleanDatabases() {
+        source = jdbcTemplates.get("db3");
+        target = jdbcTemplates.get("dblocal");
+        TestData.cleanDatabases(jdbcTemplates, idCache, "db3", "dblocal");
+        target.update("DELETE FROM sync_checkpoint");
+    }
+
+    @Test
+    void copiesOnlyNewRowsAndResumesFromTheCheckpoint() {
+        dbService.importTelemetry("db3", TestData.telemetry(2500, 1_700_000_000_000L));
+
+        SyncService.Result first = syncService.sync("db3", "dbLocal");
+        assertThat(first.telemetryRows()).isEqualTo(2500);
+        assertThat(first.batches()).isEqualTo(3);
+        assertThat(target.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(2500);
+        assertThat(target.queryForObject(
+                "SELECT SUM(cnt) FROM telemetry_rollup WHERE res = 86400000 AND col = 'temp_c'", Long.class)).isEqualTo(2500);
+
+        assertThat(syncService.sync("db3", "dbLocal").telemetryRows()).isZero();
+
+        dbService.importTelemetry("db3", TestData.telemetry(300, 1_700_010_000_000L));
+        long maxId = source.queryForObject("SELECT MAX(id) FROM telemetry", Long.class);
+        SyncService.Result second = syncService.sync("db3", "dbLocal");
+        assertThat(second.telemetryRows()).isEqualTo(300);
+        assertThat(second.telemetryLastId()).isEqualTo(maxId);
+        assertThat(target.queryForObject("SELECT COUNT(*) FROM telemetry", Integer.class)).isEqualTo(2800);
+        assertThat(target.queryForObject(
+                "SELECT rows_synced FROM sync_checkpoint WHERE source = 'db3' AND tbl = 'telemetry'", Long.class)).isEqualTo(2800);
+    }
+
+    @Test
+    void rejectsSourcesWhoseIdsMayCommitOutOfOrder() {
+        // db1 is MariaDB: concurrent writers, so id > checkpoint could skip rows for good
+        assertThatThrownBy(() -> syncService.sync("db1", "dbLocal"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("single-writer");
+    }
+
+    @Test
+    void measurementsAreRemappedToTheTargetsDeviceAndSensorIds() {
+        // different registration order, so the ids of test-b differ between the two files
+        dbService.importMeasurements("dblocal", List.of(measurement("test-b", "imu", 0)));
+        target.update("DELETE FROM measurements");
+        target.update("DELETE FROM measurement_rollup");
+
+        List<DbService.SensorMeasurement> rows = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) rows.add(measurement(i % 2 == 0 ? "test-a" : "test-b", i % 3 == 0 ? "env" : "imu", i));
+        dbService.importMeasurements("db3", rows);
+
+        SyncService.Result result = syncService.sync("db3", "dbLocal");
+        assertThat(result.measurementRows()).isEqualTo(1200);
+
+        String perSensor = """
+                SELECT d.name || '/' || s.kind || '=' || COUNT(*) FROM measurements m
+                JOIN sensors s ON s.id = m.sensor_id JOIN devices d ON d.id = s.device_id
+                GROUP BY d.name, s.kind ORDER BY d.name, s.kind""";
+        assertThat(target.queryForList(perSensor, String.class)).isEqualTo(source.queryForList(perSensor, String.class));
+        assertThat(target.queryForObject("SELECT COUNT(*) FROM devices WHERE name LIKE 'test-%'", Integer.class)).isEqualTo(2);
+        assertThat(syncService.sync("db3", "dbLocal").measurementRows()).isZero();
+    }
+
+    private static DbService.SensorMeasurement measurement(String device, String kind, int i) {
+        return new DbService.SensorMeasurement(device, kind, "test", new Timestamp(1_700_000_000_000L + i * 1000L),
+                "inside", "temp", 20.0 + i % 5, null, "C", null, null);
+    }
+}
@@ -0,0 +1,98 @@
+package de.jdbcrew.devicebridge.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TelemetryCsvPipelineTest {
+
+    private static final String HEADER = "timestamp,servo10_y_deg,servo11_x_deg,led12_pct,led13_pct,led14_pct,led15_pct,"
+            + "temp_c,press_hpa,hum_perc,mag_x,mag_y,mag_z,accel_x,accel_y,accel_z,gyro_x,gyro_y,gyro_z";
+
+    @Test
+    void parallelParseMatchesSequentialParseRowForRow() throws IOException {
+        byte[] csv = mixedCsv(2000);
+
+        Parse sequential = parse(pipeline(1), csv, 7);
+        Parse parallel = parse(pipeline(4), csv, 7);
+
+        assertThat(sequential.rows).hasSizeGreaterThan(1500);
+        assertThat(parallel.rows).containsExactlyElementsOf(sequential.rows);
+        assertThat(parallel.result).isEqualTo(sequential.result);
+        assertThat(parallel.result.rejectedLines()).isGreaterThan(0);
+        assertThat(parallel.chunks).allSatisfy(n -> assertThat(n).isBetween(1, 7));
+        assertThat(parallel.bytes).isEqualTo(csv.length - HEADER.length() - 2);
+    }
+
+    @Test
+    void parallelParseRejectsMissingColumns() {
+        byte[] csv = "timestamp,temp_c\n2024-05-01T10:00:00Z,20\n".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> parse(pipeline(4), csv, 7))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Fehlende Spalte");
+    }
+
+    private static TelemetryCsvPipeline pipeline(int threads) {
+        return new TelemetryCsvPipeline(new BridgeMetrics(new SimpleMeterRegistry()), threads, DataSize.ofBytes(0), 3);
+    }
+
+    private record Parse(List<String> rows, List<Integer> chunks, long bytes, TelemetryCsvPipeline.Result result) {}
+
+    private static Parse parse(TelemetryCsvPipeline pipeline, byte[] csv, int chunkRows) throws IOException {
+        List<String> rows = new ArrayList<>();
+        List<Integer> chunks = new ArrayList<>();
+        long[] bytes = {0};
+        TelemetryCsvPipeline.Result result = pipeline.parse("db3", new ByteArrayInputStream(csv), csv.length, chunkRows,
+                (chunk, n) -> {
+                    chunks.add(chunk.size());
+                    bytes[0] += n;
+                    for (int r = 0; r < chunk.size(); r++) {
+                        StringBuilder sb = new StringBuilder().append(chunk.epochMillis(r));
+                        for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+                            sb.append(',').append(chunk.isNull(r, c) ? "null" : Double.toString(chunk.value(r, c)));
+                        }
+                        rows.add(sb.toString());
+                    }
+                });
+        return new Parse(rows, chunks, bytes[0], result);
+    }
+
+    // every line terminator, blank and unparseable lines, quoted fields with commas, no final newline
+    private static byte[] mixedCsv(int lines) {
+        Random rnd = new Random(7);
+        String[] terminators = {"\n", "\r\n", "\r"};
+        StringBuilder sb = new StringBuilder(HEADER).append("\r\n");
+        long ts = Instant.parse("2024-05-01T00:00:00Z").toEpochMilli();
+        for (int i = 0; i < lines; i++) {
+            int kind = rnd.nextInt(20);
+            if (kind == 0) {
+                sb.append("   ");
+            } else if (kind == 1) {
+                sb.append("kein datum,1,2,3");
+            } else {
+                sb.append(kind == 2 ? "\"" + Instant.ofEpochMilli(ts + i * 1000L) + "\"" : Instant.ofEpochMilli(ts + i * 1000L));
+                for (int c = 0; c < TelemetryBatch.COLUMN_COUNT; c++) {
+                    sb.append(',');
+                    int v = rnd.nextInt(10);
+                    if (v == 0) continue;
+                    if (v == 1) sb.append("\"1,5\"");
+                    else sb.append(String.format(java.util.Locale.ROOT, "%.2f", rnd.nextGaussian() * 100));
+                }
+            }
+            if (i < lines - 1) sb.append(terminators[rnd.nextInt(terminators.length)]);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
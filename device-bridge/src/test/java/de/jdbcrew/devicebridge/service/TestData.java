@@ -0,0 +1,40 @@
+package de.jdbcrew.devicebridge.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+/** Cleanup and telemetry batches shared by the tests that write to the SQLite targets db3 and dbLocal. */
+public final class TestData {
+
+    private TestData() {}
+
+    /** Empties telemetry, measurements and their rollups, removes the {@code test-*} devices and their cached ids. */
+    public static void cleanDatabases(Map<String, JdbcTemplate> jdbcTemplates, IdCache idCache, String... dbs) {
+        for (String db : dbs) {
+            JdbcTemplate jt = jdbcTemplates.get(db);
+            jt.update("DELETE FROM telemetry");
+            jt.update("DELETE FROM telemetry_rollup");
+            jt.update("DELETE FROM measurements");
+            jt.update("DELETE FROM measurement_rollup");
+            jt.update("DELETE FROM sensors WHERE device_id IN (SELECT id FROM devices WHERE name LIKE 'test-%')");
+            jt.update("DELETE FROM devices WHERE name LIKE 'test-%'");
+            idCache.invalidateAll(db);
+        }
+    }
+
+    /** {@code rows} rows one second apart from {@code startMillis}, each with a temp_c of 20..29. */
+    public static TelemetryBatch telemetry(int rows, long startMillis) {
+        return telemetry(rows, startMillis, 0);
+    }
+
+    /** Like {@link #telemetry(int, long)}, but every {@code nullEvery}-th row (starting with the first) has no temp_c. */
+    public static TelemetryBatch telemetry(int rows, long startMillis, int nullEvery) {
+        TelemetryBatch batch = new TelemetryBatch(rows);
+        for (int i = 0; i < rows; i++) {
+            int row = batch.addRow(startMillis + i * 1000L);
+            if (nullEvery == 0 || i % nullEvery != 0) batch.set(row, TelemetryBatch.columnIndex("temp_c"), 20.0 + i % 10);
+        }
+        return batch;
+    }
+}